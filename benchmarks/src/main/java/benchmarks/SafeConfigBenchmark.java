@@ -0,0 +1,91 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import backtracking.Configuration;
+import backtracking.SafeConfig;
+
+/**
+ * The steps SafeConfig takes at every node of the search, on the test
+ * safes and on made up safes of growing size.  The laser the beam
+ * benchmarks fire and take away is the first laser of a solution, on the
+ * solved grid, so its beams run as far as they do in a real search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SafeConfigBenchmark {
+    @Param({ "4x4safe", "7x7safe", "8x8safe", "10x8safe", "14x14safe", "gen16", "gen32", "gen64" })
+    public String safe;
+
+    private SafeConfig start;
+    private SafeConfig solved;
+    private int row;
+    private int col;
+
+    @Setup
+    public void setUp() throws IOException {
+        String file = Safes.file(safe);
+        this.start = new SafeConfig(file);
+        this.solved = new SafeConfig(file);
+        this.solved.setGrid(Solutions.solve(Safes.grid(safe)));
+        String[][] grid = this.solved.getGrid();
+        for (int r = grid.length - 1; r >= 0; r--) {
+            for (int c = grid[r].length - 1; c >= 0; c--) {
+                if (grid[r][c].equals(SafeConfig.LASER)) {
+                    this.row = r;
+                    this.col = c;
+                }
+            }
+        }
+    }
+
+    /**
+     * The successors of the starting config.  getSuccessors moves the
+     * config it is called on to the next slot, so it is called on a copy,
+     * which costs about as much as one of the successors.
+     */
+    @Benchmark
+    public Collection<Configuration> getSuccessors() {
+        return new SafeConfig(start).getSuccessors();
+    }
+
+    @Benchmark
+    public SafeConfig shootLaser() {
+        solved.shootLaser(row, col);
+        return solved;
+    }
+
+    /**
+     * Take a laser away and put it back, so the grid is the same for the
+     * next call.
+     */
+    @Benchmark
+    public SafeConfig removeLaser() {
+        solved.removeLaser(row, col);
+        solved.add(row, col);
+        return solved;
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return solved.verify();
+    }
+}
@@ -0,0 +1,72 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.SafeModel;
+
+/**
+ * The model's side of a move in the user interfaces: adding and removing
+ * a laser, and checking the safe.  The model starts out with every laser
+ * of a solution added.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SafeModelBenchmark {
+    @Param({ "4x4safe", "7x7safe", "8x8safe", "10x8safe", "14x14safe", "gen16", "gen32", "gen64" })
+    public String safe;
+
+    private SafeModel model;
+    private int row;
+    private int col;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.model = new SafeModel(Safes.file(safe));
+        String[][] grid = Solutions.solve(Safes.grid(safe));
+        this.row = -1;
+        for (int r = 0; r < grid.length; r++) {
+            for (int c = 0; c < grid[r].length; c++) {
+                if (grid[r][c].equals(SafeModel.LASER)) {
+                    this.model.add(r, c);
+                    if (this.row < 0) {
+                        this.row = r;
+                        this.col = c;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove a laser and add it back, so the grid is the same for the
+     * next call.
+     */
+    @Benchmark
+    public SafeModel removeAndAdd() {
+        model.remove(row, col);
+        model.add(row, col);
+        return model;
+    }
+
+    @Benchmark
+    public boolean verify() {
+        return model.verify();
+    }
+}
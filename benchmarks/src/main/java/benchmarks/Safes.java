@@ -0,0 +1,76 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import backtracking.SafeGenerator;
+import backtracking.SafePuzzle;
+
+/**
+ * The safes the benchmarks run on.  A name like "14x14safe" is the file
+ * of that name in the tests directory, and a name like "gen16" is a
+ * 16x16 safe made up by SafeGenerator, the same one every run.
+ *
+ * The tests directory is looked for in the working directory and the one
+ * above it, so the benchmarks run from the project or from the benchmarks
+ * module; the lasers.tests system property points it anywhere else.
+ */
+public class Safes {
+    /** the prefix of the names of made up safes */
+    public final static String GENERATED = "gen";
+
+    /**
+     * Getter function. return the grid of a safe.
+     * @param name the name of the safe
+     * @return the grid
+     * @throws FileNotFoundException if there is no such test file
+     */
+    public static String[][] grid(String name) throws FileNotFoundException {
+        if (name.startsWith(GENERATED)) {
+            int size = Integer.parseInt(name.substring(GENERATED.length()));
+            return new SafeGenerator(size, size).generate(size);
+        }
+        return SafePuzzle.read(testFile(name).getPath());
+    }
+
+    /**
+     * Getter function. return a file that holds a safe, for the classes
+     * that only read safes from files.  A made up safe is written to a
+     * temporary file, which is deleted when the JVM exits.
+     * @param name the name of the safe
+     * @return the file name
+     * @throws IOException if the file can not be found or written
+     */
+    public static String file(String name) throws IOException {
+        if (!name.startsWith(GENERATED)) {
+            return testFile(name).getPath();
+        }
+        String[][] grid = grid(name);
+        File file = File.createTempFile(name, ".txt");
+        file.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(file)) {
+            out.print(grid.length + " " + grid[0].length + "\n" + SafePuzzle.format(grid));
+        }
+        return file.getPath();
+    }
+
+    /**
+     * Find a file of the tests directory.
+     * @param name the name of the safe
+     * @return the file
+     * @throws FileNotFoundException if it is not there
+     */
+    private static File testFile(String name) throws FileNotFoundException {
+        String dir = System.getProperty("lasers.tests");
+        String[] dirs = dir != null ? new String[] { dir } : new String[] { "tests", "../tests" };
+        for (String d : dirs) {
+            File file = new File(d, name + ".txt");
+            if (file.isFile()) {
+                return file;
+            }
+        }
+        throw new FileNotFoundException(name + ".txt not found in " + String.join(" or ", dirs));
+    }
+}
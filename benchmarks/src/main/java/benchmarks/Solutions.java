@@ -0,0 +1,27 @@
+package benchmarks;
+
+import backtracking.IterativeBacktracker;
+import backtracking.SafeBoard;
+import backtracking.SafePuzzle;
+
+/**
+ * Solves the safes the benchmarks need a solution of, outside of the
+ * measured code.
+ */
+public class Solutions {
+    /**
+     * Getter function. return the solved grid of a safe.
+     * @param grid the grid of the safe
+     * @return the grid with its lasers and beams
+     * @throws IllegalArgumentException if the safe has no solution
+     */
+    public static String[][] solve(String[][] grid) {
+        SafeBoard board = new SafeBoard(new SafePuzzle(grid));
+        board.setPropagation(true);
+        board.setCellOrder(SafeBoard.CellOrder.MOST_CONSTRAINED);
+        if (board.presolve() == null || !new IterativeBacktracker(false).solveInPlace(board)) {
+            throw new IllegalArgumentException("the safe has no solution");
+        }
+        return board.getGrid();
+    }
+}
@@ -0,0 +1,77 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import backtracking.Backtracker;
+import backtracking.SafeBoard;
+import backtracking.SafeConfig;
+import backtracking.SafeExactCover;
+import backtracking.SafePuzzle;
+import backtracking.SafeSat;
+
+/**
+ * A whole solve, from the starting configuration to the first solution,
+ * with every engine SafeSolver has, on the test safes and on made up
+ * safes of growing size.  Setting up the engine is part of the solve,
+ * but reading the file is not: the strings engine starts from a copy of
+ * a config read once.  The engines are named the way SafeSolver names
+ * them.  The bits engine is left out: it checks nothing before the last
+ * cell, and takes minutes where the others take milliseconds from a
+ * 12x12 safe up.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolverBenchmark {
+    @Param({ "7x7safe", "8x8safe", "10x8safe", "14x14safe", "gen8", "gen12", "gen16" })
+    public String safe;
+
+    @Param({ "strings", "inplace", "mcv", "dlx", "sat" })
+    public String engine;
+
+    private SafeConfig config;
+    private SafePuzzle puzzle;
+
+    @Setup
+    public void setUp() throws IOException {
+        this.config = new SafeConfig(Safes.file(safe));
+        this.puzzle = new SafePuzzle(Safes.grid(safe));
+    }
+
+    @Benchmark
+    public Object solve() {
+        switch (engine) {
+            case "strings":
+                return new Backtracker(false).solve(new SafeConfig(config));
+            case "inplace":
+                return new Backtracker(false).solveInPlace(new SafeBoard(puzzle));
+            case "mcv":
+                SafeBoard board = new SafeBoard(puzzle);
+                board.setPropagation(true);
+                board.setCellOrder(SafeBoard.CellOrder.MOST_CONSTRAINED);
+                return board.presolve() != null && new Backtracker(false).solveInPlace(board);
+            case "dlx":
+                return new SafeExactCover(puzzle).solve();
+            case "sat":
+                return new SafeSat(puzzle).solve();
+            default:
+                throw new IllegalArgumentException("unknown engine: " + engine);
+        }
+    }
+}
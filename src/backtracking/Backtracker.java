@@ -2,6 +2,7 @@ package backtracking;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -14,6 +15,15 @@ import java.util.Optional;
  * in this project. A second method has been added that you should
  * implement.
  *
+ * The solvers keep SolveMetrics of their searches, which cost too little
+ * to turn off, and send Flight Recorder events as they start and end.
+ * solveWithPath only counts the nodes it expands.
+ *
+ * A solve can also be given a SolveBudget, which stops it once its time
+ * or nodes run out or its token is cancelled.  The result then tells
+ * that the budget ran out, and an in-place configuration is back where
+ * it started.
+ *
  * @author Sean Strout @ RIT CS
  * @author James Heliotis @ RIT CS
  * @author Yuying Mao
@@ -29,6 +39,13 @@ public class Backtracker{
 
     private int next;
 
+    private final SolveMetrics metrics;
+
+    // the budget of the solve that is running, if it has one
+    private SolveBudget budget;
+    private long deadline;
+    private SolveStatus stopped;
+
     /**
      * Initialize a new backtracker.
      *
@@ -37,11 +54,50 @@ public class Backtracker{
     public Backtracker(boolean debug) {
         this.next = 0;
         this.debug = debug;
+        this.metrics = new SolveMetrics("Backtracker");
         if (this.debug) {
             System.out.println("Backtracker debugging enabled...");
         }
     }
 
+    /**
+     * Getter function. return how many configurations the solvers have
+     * looked at since this backtracker was made or last reset.
+     *
+     * @return the number of nodes expanded
+     */
+    public long getNodeCount() {
+        return this.metrics.getNodes();
+    }
+
+    /**
+     * Start counting nodes, and everything else the metrics count, from
+     * zero again.
+     */
+    public void resetNodeCount() {
+        this.metrics.reset();
+    }
+
+    /**
+     * Getter function. return the counts of the searches since this
+     * backtracker was made or last reset.
+     *
+     * @return the metrics, which keep counting as the solvers run
+     */
+    public SolveMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Setter function. turn the timing of the phases of the search on or
+     * off.  It is off by default.
+     *
+     * @param timing true to time every phase
+     */
+    public void setPhaseTiming(boolean timing) {
+        this.metrics.setPhaseTiming(timing);
+    }
+
     /**
      * A utility routine for printing out various debug messages.
      *
@@ -49,7 +105,7 @@ public class Backtracker{
      *               successor, e.g.)
      * @param config The config to display
      */
-    private void debugPrint(String msg, Configuration config) {
+    private void debugPrint(String msg, Object config) {
         if (this.debug) {
             System.out.println(msg + ":\n" + config);
         }
@@ -62,27 +118,232 @@ public class Backtracker{
      * @return A solution config, or null if no solution
      */
     public Optional<Configuration> solve(Configuration config) {
+        this.metrics.begin(config);
+        Optional<Configuration> sol = search(config, 0);
+        this.metrics.end(sol.isPresent());
+        return sol;
+    }
+
+    /**
+     * Try find a solution, and count how the search went.  The counts
+     * start from zero, like after resetNodeCount.
+     *
+     * @param config A valid configuration
+     * @return the solution config, or empty if no solution, with the
+     * metrics of the search
+     */
+    public SolveResult<Configuration> solveWithMetrics(Configuration config) {
+        return solve(config, new SolveBudget());
+    }
+
+    /**
+     * Try find a solution within a budget.  The counts start from zero,
+     * like after resetNodeCount.
+     *
+     * @param config A valid configuration
+     * @param budget the limits of the search
+     * @return the solution config, or empty if there is none or the
+     * budget ran out first, with how the search ended and its metrics
+     */
+    public SolveResult<Configuration> solve(Configuration config, SolveBudget budget) {
+        this.metrics.reset();
+        startBudget(budget);
+        try {
+            Optional<Configuration> sol = solve(config);
+            return new SolveResult<>(status(sol.isPresent()), sol, new SolveMetrics(this.metrics));
+        } finally {
+            this.budget = null;
+            this.stopped = null;
+        }
+    }
+
+    /**
+     * The recursion of solve.
+     *
+     * @param config A valid configuration
+     * @param depth how many steps the configuration is from the start
+     * @return A solution config, or empty if no solution
+     */
+    private Optional<Configuration> search(Configuration config, int depth) {
+        if (outOfBudget()) {
+            return Optional.empty();
+        }
+        this.metrics.node(depth);
         debugPrint("Current config", config);
-        if (config.isGoal()) {
+        long start = this.metrics.startPhase();
+        boolean goal = config.isGoal();
+        this.metrics.endPhase(SolveMetrics.Phase.GOAL, start);
+        if (goal) {
             debugPrint("\tGoal config", config);
             return Optional.of(config);
         } else {
-            for (Configuration child : config.getSuccessors()) {
-                if (child.isValid()) {
+            start = this.metrics.startPhase();
+            Collection<Configuration> successors = config.getSuccessors();
+            this.metrics.endPhase(SolveMetrics.Phase.SUCCESSORS, start);
+            for (Configuration child : successors) {
+                this.metrics.successor();
+                start = this.metrics.startPhase();
+                boolean valid = child.isValid();
+                this.metrics.endPhase(SolveMetrics.Phase.VALIDITY, start);
+                if (valid) {
                     debugPrint("\tValid successor", child);
-                    Optional<Configuration> sol = solve(child);
-                    if (sol.isPresent()) {
+                    Optional<Configuration> sol = search(child, depth + 1);
+                    if (sol.isPresent() || this.stopped != null) {
                         return sol;
                     }
                 } else {
+                    this.metrics.invalid(child.getPruneReason());
                     debugPrint("\tInvalid successor", child);
                 }
             }
             // implicit backtracking happens here
+            this.metrics.backtrack();
         }
         return Optional.empty();
     }
 
+    /**
+     * Try find a solution, if one exists, by changing a single
+     * configuration in place.  Each branch is applied, searched and
+     * undone again, so nothing is copied and, once the search has
+     * started, nothing is allocated.  The branches are tried in the same
+     * order as the successors of the matching Configuration, so the
+     * solution is the same one solve finds.
+     *
+     * @param config A valid configuration, at the start of its search
+     * @return true if a solution was found; the configuration is then
+     * left in the goal state.  false if there is no solution; the
+     * configuration is then back where it started.
+     */
+    public boolean solveInPlace(UndoableConfiguration config) {
+        this.metrics.begin(config);
+        boolean solved = searchInPlace(config, 0);
+        this.metrics.end(solved);
+        return solved;
+    }
+
+    /**
+     * Try find a solution in place, and count how the search went.  The
+     * counts start from zero, like after resetNodeCount.
+     *
+     * @param config A valid configuration, at the start of its search
+     * @return the configuration in its goal state, or empty if there is
+     * no solution, with the metrics of the search
+     */
+    public SolveResult<UndoableConfiguration> solveInPlaceWithMetrics(UndoableConfiguration config) {
+        return solveInPlace(config, new SolveBudget());
+    }
+
+    /**
+     * Try find a solution in place within a budget.  The counts start
+     * from zero, like after resetNodeCount.
+     *
+     * @param config A valid configuration, at the start of its search
+     * @param budget the limits of the search
+     * @return the configuration in its goal state, or empty if there is
+     * no solution or the budget ran out first, with how the search ended
+     * and its metrics.  Without a solution the configuration is back
+     * where it started.
+     */
+    public SolveResult<UndoableConfiguration> solveInPlace(UndoableConfiguration config,
+                                                           SolveBudget budget) {
+        this.metrics.reset();
+        startBudget(budget);
+        try {
+            boolean solved = solveInPlace(config);
+            return new SolveResult<>(status(solved), solved ? Optional.of(config) : Optional.empty(),
+                    new SolveMetrics(this.metrics));
+        } finally {
+            this.budget = null;
+            this.stopped = null;
+        }
+    }
+
+    /**
+     * The recursion of solveInPlace.
+     *
+     * @param config A valid configuration
+     * @param depth how many steps the configuration is from the start
+     * @return true if a solution was found
+     */
+    private boolean searchInPlace(UndoableConfiguration config, int depth) {
+        if (outOfBudget()) {
+            return false;
+        }
+        this.metrics.node(depth);
+        debugPrint("Current config", config);
+        long start = this.metrics.startPhase();
+        boolean goal = config.isGoal();
+        this.metrics.endPhase(SolveMetrics.Phase.GOAL, start);
+        if (goal) {
+            debugPrint("\tGoal config", config);
+            return true;
+        }
+        int branches = config.getBranchCount();
+        for (int branch = 0; branch < branches; branch++) {
+            this.metrics.successor();
+            start = this.metrics.startPhase();
+            config.apply(branch);
+            this.metrics.endPhase(SolveMetrics.Phase.SUCCESSORS, start);
+            start = this.metrics.startPhase();
+            boolean valid = config.isValid();
+            this.metrics.endPhase(SolveMetrics.Phase.VALIDITY, start);
+            if (valid) {
+                debugPrint("\tValid successor", config);
+                if (searchInPlace(config, depth + 1)) {
+                    return true;
+                }
+            } else {
+                this.metrics.invalid(config.getPruneReason());
+                debugPrint("\tInvalid successor", config);
+            }
+            config.undo();
+            if (this.stopped != null) {
+                return false;
+            }
+        }
+        // backtracking is the undo above
+        this.metrics.backtrack();
+        return false;
+    }
+
+    /**
+     * Start keeping a solve within a budget.
+     *
+     * @param budget the limits of the solve
+     */
+    private void startBudget(SolveBudget budget) {
+        this.budget = budget;
+        this.deadline = budget.deadline();
+        this.stopped = null;
+    }
+
+    /**
+     * Has the solve that is running used up its budget?  Once it has, it
+     * stays that way until the next solve with a budget starts.
+     *
+     * @return true if the solve must stop
+     */
+    private boolean outOfBudget() {
+        if (this.budget != null && this.stopped == null) {
+            this.stopped = this.budget.check(this.metrics.getNodes(), this.deadline);
+        }
+        return this.stopped != null;
+    }
+
+    /**
+     * How the solve that is running ended.
+     *
+     * @param solved true if it found a goal
+     * @return the status
+     */
+    private SolveStatus status(boolean solved) {
+        if (solved) {
+            return SolveStatus.SOLVED;
+        }
+        return this.stopped != null ? this.stopped : SolveStatus.UNSOLVABLE;
+    }
+
     /**
      * Find a goal configuration if it exists, and how to get there.
      *
@@ -96,6 +357,7 @@ public class Backtracker{
             start = true;
         }
 //        this.solution.add(current);
+        this.metrics.node(0);
         debugPrint("Current config", current);
         if (current.isGoal()) {
             debugPrint("\tGoal config", current);
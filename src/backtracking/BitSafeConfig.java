@@ -0,0 +1,327 @@
+package backtracking;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * A configuration of a safe that keeps its cells in bitmasks instead of
+ * a grid of strings.  It searches the same way as SafeConfig, one cell at
+ * a time in row-major order, but a successor only copies a few arrays of
+ * longs, and shooting or checking a laser works on whole words at a time.
+ *
+ * The row masks hold one bit per cell in row-major order, every row
+ * starting on a fresh word.  The column masks hold the same cells in
+ * column-major order.  A laser's row beam is a bit range in the row
+ * masks and its column beam a bit range in the column masks, so a cell
+ * is lit when its bit is set in either one.
+ */
+public class BitSafeConfig implements Configuration {
+
+    private final SafePuzzle puzzle;
+    private final int rowWords;
+    private final int colWords;
+    /** the pillars, in row masks; shared by every configuration */
+    private final long[] pillars;
+
+    private long[] lasers;
+    private long[] colLasers;
+    private long[] rowBeams;
+    private long[] colBeams;
+    private int cursor;
+    private PruneReason reason;
+
+    /**
+     * constructor. read a file and create the starting configuration.
+     * @param filename file name
+     * @throws FileNotFoundException if file does not exist
+     */
+    public BitSafeConfig(String filename) throws FileNotFoundException {
+        this(new SafePuzzle(filename));
+    }
+
+    /**
+     * constructor. create the starting configuration of a safe.
+     * @param puzzle the layout of the safe
+     */
+    public BitSafeConfig(SafePuzzle puzzle) {
+        this.puzzle = puzzle;
+        this.rowWords = (puzzle.getCols() + 63) >>> 6;
+        this.colWords = (puzzle.getRows() + 63) >>> 6;
+        this.pillars = new long[puzzle.getRows() * this.rowWords];
+        this.lasers = new long[this.pillars.length];
+        this.rowBeams = new long[this.pillars.length];
+        this.colLasers = new long[puzzle.getCols() * this.colWords];
+        this.colBeams = new long[this.colLasers.length];
+        for (int cell = 0; cell < puzzle.getCellCount(); cell++) {
+            if (puzzle.isPillar(cell)) {
+                int row = cell / puzzle.getCols();
+                int col = cell % puzzle.getCols();
+                this.pillars[row * this.rowWords + (col >>> 6)] |= 1L << col;
+            }
+        }
+        this.cursor = -1;
+    }
+
+    /**
+     * Copy constructor.  The masks that change are copied, the layout and
+     * the pillars are shared.
+     * @param other the config to copy
+     */
+    public BitSafeConfig(BitSafeConfig other) {
+        this.puzzle = other.puzzle;
+        this.rowWords = other.rowWords;
+        this.colWords = other.colWords;
+        this.pillars = other.pillars;
+        this.lasers = other.lasers.clone();
+        this.colLasers = other.colLasers.clone();
+        this.rowBeams = other.rowBeams.clone();
+        this.colBeams = other.colBeams.clone();
+        this.cursor = other.cursor;
+    }
+
+    /**
+     * Is a bit set?
+     * @param mask the mask
+     * @param base the first word of the row or column
+     * @param pos the position inside the row or column
+     * @return true if the bit is set
+     */
+    private static boolean get(long[] mask, int base, int pos) {
+        return (mask[base + (pos >>> 6)] & (1L << pos)) != 0;
+    }
+
+    /**
+     * Set the bits from, inclusive, to to, exclusive, of a row or column.
+     * @param mask the mask
+     * @param base the first word of the row or column
+     * @param from the first position
+     * @param to the position after the last
+     */
+    private static void setRange(long[] mask, int base, int from, int to) {
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long head = -1L << from;
+        long tail = -1L >>> -to;
+        if (first == last) {
+            mask[base + first] |= head & tail;
+            return;
+        }
+        mask[base + first] |= head;
+        for (int w = first + 1; w < last; w++) {
+            mask[base + w] = -1L;
+        }
+        mask[base + last] |= tail;
+    }
+
+    /**
+     * Count the bits from, inclusive, to to, exclusive, of a row or column.
+     * @param mask the mask
+     * @param base the first word of the row or column
+     * @param from the first position
+     * @param to the position after the last
+     * @return the number of set bits
+     */
+    private static int countRange(long[] mask, int base, int from, int to) {
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        long head = -1L << from;
+        long tail = -1L >>> -to;
+        if (first == last) {
+            return Long.bitCount(mask[base + first] & head & tail);
+        }
+        int count = Long.bitCount(mask[base + first] & head);
+        for (int w = first + 1; w < last; w++) {
+            count += Long.bitCount(mask[base + w]);
+        }
+        return count + Long.bitCount(mask[base + last] & tail);
+    }
+
+    /**
+     * Is the cell lit by a beam, from its row or from its column?
+     * @param row the row number
+     * @param col the column number
+     * @return true if a laser shines on the cell
+     */
+    private boolean isLit(int row, int col) {
+        return get(rowBeams, row * rowWords, col) || get(colBeams, col * colWords, row);
+    }
+
+    /**
+     * Does the cell hold a laser?
+     * @param row the row number
+     * @param col the column number
+     * @return true if the cell holds a laser
+     */
+    private boolean isLaser(int row, int col) {
+        return get(lasers, row * rowWords, col);
+    }
+
+    /**
+     * Place a laser and light its row and column segments.
+     * @param row the row number
+     * @param col the column number
+     */
+    public void shootLaser(int row, int col) {
+        int cell = row * puzzle.getCols() + col;
+        int rowSeg = puzzle.getRowSegment(cell);
+        int colSeg = puzzle.getColSegment(cell);
+        lasers[row * rowWords + (col >>> 6)] |= 1L << col;
+        colLasers[col * colWords + (row >>> 6)] |= 1L << row;
+        setRange(rowBeams, row * rowWords, puzzle.getSegmentFrom(rowSeg), puzzle.getSegmentTo(rowSeg));
+        setRange(colBeams, col * colWords, puzzle.getSegmentFrom(colSeg), puzzle.getSegmentTo(colSeg));
+    }
+
+    /**
+     * Verify laser helper function.  The laser may not share its row
+     * segment or its column segment with another laser.
+     * @param row the row number
+     * @param col the column number
+     * @return true if no other laser shines on this one
+     */
+    public boolean verifyLaser(int row, int col) {
+        int cell = row * puzzle.getCols() + col;
+        int rowSeg = puzzle.getRowSegment(cell);
+        int colSeg = puzzle.getColSegment(cell);
+        return countRange(lasers, row * rowWords,
+                puzzle.getSegmentFrom(rowSeg), puzzle.getSegmentTo(rowSeg)) <= 1
+                && countRange(colLasers, col * colWords,
+                puzzle.getSegmentFrom(colSeg), puzzle.getSegmentTo(colSeg)) <= 1;
+    }
+
+    /**
+     * Verify pillar helper function.
+     * @param row the row number
+     * @param col the column number
+     * @return true if the pillar has the right number of lasers next to it
+     */
+    public boolean verifyPillar(int row, int col) {
+        int value = puzzle.getPillar(row * puzzle.getCols() + col);
+        if (value == SafePuzzle.ANY) {
+            return true;
+        }
+        int numLasers = 0;
+        if (row > 0 && isLaser(row - 1, col)) {
+            numLasers++;
+        }
+        if (row < puzzle.getRows() - 1 && isLaser(row + 1, col)) {
+            numLasers++;
+        }
+        if (col > 0 && isLaser(row, col - 1)) {
+            numLasers++;
+        }
+        if (col < puzzle.getCols() - 1 && isLaser(row, col + 1)) {
+            numLasers++;
+        }
+        return numLasers == value;
+    }
+
+    /**
+     * Verify safe correctness.  Every segment holds at most one laser,
+     * every cell that is not a pillar is lit, and every numbered pillar
+     * has its number of lasers.
+     * @return boolean representing the validity of the safe configuration
+     */
+    public boolean verify() {
+        for (int seg = 0; seg < puzzle.getSegmentCount(); seg++) {
+            long[] mask = puzzle.isRowSegment(seg) ? lasers : colLasers;
+            int base = puzzle.getSegmentLine(seg) * (puzzle.isRowSegment(seg) ? rowWords : colWords);
+            if (countRange(mask, base, puzzle.getSegmentFrom(seg), puzzle.getSegmentTo(seg)) > 1) {
+                return false;
+            }
+        }
+        int cols = puzzle.getCols();
+        for (int row = 0; row < puzzle.getRows(); row++) {
+            int base = row * rowWords;
+            for (int w = 0; w < rowWords; w++) {
+                long valid = w == rowWords - 1 ? -1L >>> -cols : -1L;
+                long dark = ~(pillars[base + w] | rowBeams[base + w]) & valid;
+                while (dark != 0) {
+                    int col = (w << 6) + Long.numberOfTrailingZeros(dark);
+                    if (!get(colBeams, col * colWords, row)) {
+                        return false;
+                    }
+                    dark &= dark - 1;
+                }
+                long numbered = pillars[base + w];
+                while (numbered != 0) {
+                    int col = (w << 6) + Long.numberOfTrailingZeros(numbered);
+                    if (!verifyPillar(row, col)) {
+                        return false;
+                    }
+                    numbered &= numbered - 1;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Collection<Configuration> getSuccessors() {
+        Collection<Configuration> config = new ArrayList<>(2);
+        int next = cursor + 1;
+        int row = next / puzzle.getCols();
+        int col = next % puzzle.getCols();
+        if (!puzzle.isPillar(next) && !isLit(row, col)) {
+            BitSafeConfig child1 = new BitSafeConfig(this);
+            child1.cursor = next;
+            child1.shootLaser(row, col);
+            BitSafeConfig child2 = new BitSafeConfig(this);
+            child2.cursor = next;
+            config.add(child1);
+            config.add(child2);
+        } else {
+            BitSafeConfig child3 = new BitSafeConfig(this);
+            child3.cursor = next;
+            config.add(child3);
+        }
+        return config;
+    }
+
+    @Override
+    public boolean isValid() {
+        int row = cursor / puzzle.getCols();
+        int col = cursor % puzzle.getCols();
+        if (isLaser(row, col) && !verifyLaser(row, col)) {
+            reason = PruneReason.LASER_CONFLICT;
+            return false;
+        }
+        if (cursor == puzzle.getCellCount() - 1 && !verify()) {
+            reason = PruneReason.INCOMPLETE;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public PruneReason getPruneReason() {
+        return reason;
+    }
+
+    @Override
+    public boolean isGoal() {
+        return cursor == puzzle.getCellCount() - 1 && verify();
+    }
+
+    @Override
+    public String[][] getGrid() {
+        boolean[] cells = new boolean[puzzle.getCellCount()];
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = isLaser(cell / puzzle.getCols(), cell % puzzle.getCols());
+        }
+        return puzzle.toGrid(cells);
+    }
+
+    /**
+     * Getter function. return the layout of the safe.
+     * @return the layout of the safe
+     */
+    public SafePuzzle getPuzzle() {
+        return puzzle;
+    }
+
+    @Override
+    public String toString() {
+        return SafePuzzle.format(getGrid());
+    }
+}
@@ -0,0 +1,26 @@
+package backtracking;
+
+/**
+ * A flag that one thread raises to stop a search another thread is
+ * running.  The search looks at it every so many nodes, see SolveBudget,
+ * so it stops soon after, but not at once.
+ */
+public class CancellationToken {
+    private volatile boolean cancelled;
+
+    /**
+     * Ask the searches that use this token to stop.  There is no way to
+     * take it back; a new search needs a new token.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Getter function. return whether the token was cancelled.
+     * @return true if cancel was called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,668 @@
+package backtracking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A small SAT solver that learns from its conflicts (CDCL), written for
+ * the CNF that SafeSat builds but usable for any formula.  Variables are
+ * numbered from 1, and a literal is a variable or its negation, as in
+ * the DIMACS format: 3 means variable 3 is true, -3 that it is false.
+ *
+ * The solver is the usual kind:
+ *
+ * - every clause watches two of its literals, and is only looked at when
+ *   one of those becomes false.
+ * - a conflict is analysed back to its first unique implication point,
+ *   and the clause learned from it sends the search back to the level
+ *   where it becomes unit.
+ * - the variable to decide next is the one with the highest activity
+ *   (VSIDS); the variables of every conflict get their activity bumped,
+ *   and older bumps fade away.
+ * - a variable is decided to the value it had last (phase saving), and
+ *   to false the first time.
+ * - the search restarts after a number of conflicts that follows the
+ *   Luby sequence, and every so often forgets half of the learned clauses
+ *   that tie together the most decision levels.
+ *
+ * Inside the solver a literal is 2 * (var - 1), plus 1 if it is negated.
+ * A solver is meant to be used once: add the clauses, then call solve().
+ */
+public class CdclSolver {
+    /** conflicts between restarts, times the Luby sequence */
+    private final static int RESTART_BASE = 100;
+    /** how fast the activity of the variables fades */
+    private final static double VAR_DECAY = 0.95;
+    /** learned clauses that tie this many levels or fewer are kept */
+    private final static int KEEP_LBD = 2;
+
+    private final int vars;
+    private boolean ok;
+
+    // the clauses; a deleted clause is null, and learned clauses keep
+    // the number of levels they tied together when they were learned
+    private final ArrayList<int[]> clauses;
+    private int[] lbd;
+    private final int[][] watches;
+    private final int[] watchSize;
+
+    // the assignment
+    private final byte[] assign;
+    private final int[] level;
+    private final int[] reason;
+    private final boolean[] phase;
+    private final int[] trail;
+    private int trailSize;
+    private int qhead;
+    private final int[] trailLim;
+    private int levels;
+
+    // the order of the decisions
+    private final double[] activity;
+    private double varInc;
+    private final int[] heap;
+    private final int[] heapIndex;
+    private int heapSize;
+
+    // conflict analysis
+    private final boolean[] seen;
+    private final int[] learnt;
+    private int learntSize;
+    private final int[] levelStamp;
+    private int stamp;
+
+    private int maxLearned;
+    private int learnedLive;
+    private long conflicts;
+    private long decisions;
+    private long propagations;
+    private long restarts;
+    private long learned;
+
+    /**
+     * constructor. create a solver with no clauses.
+     * @param vars the number of variables
+     */
+    public CdclSolver(int vars) {
+        this.vars = vars;
+        this.ok = true;
+        this.clauses = new ArrayList<>();
+        this.lbd = new int[16];
+        this.watches = new int[2 * vars][];
+        this.watchSize = new int[2 * vars];
+        for (int lit = 0; lit < 2 * vars; lit++) {
+            this.watches[lit] = new int[4];
+        }
+        this.assign = new byte[vars];
+        this.level = new int[vars];
+        this.reason = new int[vars];
+        Arrays.fill(this.reason, -1);
+        this.phase = new boolean[vars];
+        this.trail = new int[vars];
+        this.trailLim = new int[vars + 1];
+        this.activity = new double[vars];
+        this.varInc = 1;
+        this.heap = new int[vars];
+        this.heapIndex = new int[vars];
+        for (int v = 0; v < vars; v++) {
+            this.heap[v] = v;
+            this.heapIndex[v] = v;
+        }
+        this.heapSize = vars;
+        this.seen = new boolean[vars];
+        this.learnt = new int[vars + 1];
+        this.levelStamp = new int[vars + 1];
+    }
+
+    /**
+     * Add a clause.  Clauses can only be added before solve() is called.
+     * @param lits the literals of the clause
+     * @return false if the formula is now known to have no solution
+     */
+    public boolean addClause(int... lits) {
+        if (!ok) {
+            return false;
+        }
+        int[] c = new int[lits.length];
+        int size = 0;
+        for (int ext : lits) {
+            int lit = 2 * (Math.abs(ext) - 1) + (ext < 0 ? 1 : 0);
+            int value = value(lit);
+            if (value == 1) {
+                return true;
+            }
+            if (value == -1) {
+                continue;
+            }
+            boolean dup = false;
+            for (int k = 0; k < size; k++) {
+                if (c[k] == (lit ^ 1)) {
+                    return true;
+                }
+                dup |= c[k] == lit;
+            }
+            if (!dup) {
+                c[size++] = lit;
+            }
+        }
+        if (size == 0) {
+            ok = false;
+        } else if (size == 1) {
+            enqueue(c[0], -1);
+            ok = propagate() == -1;
+        } else {
+            addStored(Arrays.copyOf(c, size), 0);
+        }
+        return ok;
+    }
+
+    /**
+     * Search for an assignment that satisfies every clause.
+     * @return true if there is one; getValue then reads it
+     */
+    public boolean solve() {
+        if (!ok) {
+            return false;
+        }
+        maxLearned = Math.max(clauses.size() / 3, 1000);
+        long limit = RESTART_BASE * luby(0);
+        long sinceRestart = 0;
+        while (true) {
+            int conflict = propagate();
+            if (conflict != -1) {
+                conflicts++;
+                sinceRestart++;
+                if (levels == 0) {
+                    ok = false;
+                    return false;
+                }
+                int back = analyze(conflict);
+                cancelUntil(back);
+                if (learntSize == 1) {
+                    enqueue(learnt[0], -1);
+                } else {
+                    int ci = addStored(Arrays.copyOf(learnt, learntSize), countLevels());
+                    enqueue(learnt[0], ci);
+                    learned++;
+                    learnedLive++;
+                }
+                varInc /= VAR_DECAY;
+            } else {
+                if (sinceRestart >= limit) {
+                    restarts++;
+                    cancelUntil(0);
+                    limit = RESTART_BASE * luby(restarts);
+                    sinceRestart = 0;
+                }
+                if (learnedLive >= maxLearned) {
+                    reduce();
+                    maxLearned += maxLearned / 10;
+                }
+                int v = pickBranch();
+                if (v == -1) {
+                    return true;
+                }
+                decisions++;
+                trailLim[levels++] = trailSize;
+                enqueue(2 * v + (phase[v] ? 0 : 1), -1);
+            }
+        }
+    }
+
+    /**
+     * Getter function. return the value of a variable in the assignment
+     * found by solve().
+     * @param var the variable, from 1
+     * @return true if the variable is true
+     */
+    public boolean getValue(int var) {
+        return assign[var - 1] == 1;
+    }
+
+    /**
+     * Getter function. return the number of variables.
+     * @return the number of variables
+     */
+    public int getVariableCount() {
+        return vars;
+    }
+
+    /**
+     * Getter function. return the number of clauses stored, learned
+     * clauses included.  Unit clauses are not stored.
+     * @return the number of clauses
+     */
+    public int getClauseCount() {
+        int n = 0;
+        for (int[] c : clauses) {
+            if (c != null) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Getter function. return the number of conflicts.
+     * @return the number of conflicts
+     */
+    public long getConflictCount() {
+        return conflicts;
+    }
+
+    /**
+     * Getter function. return the number of decisions.
+     * @return the number of decisions
+     */
+    public long getDecisionCount() {
+        return decisions;
+    }
+
+    /**
+     * Getter function. return the number of literals propagated.
+     * @return the number of propagations
+     */
+    public long getPropagationCount() {
+        return propagations;
+    }
+
+    /**
+     * Getter function. return the number of restarts.
+     * @return the number of restarts
+     */
+    public long getRestartCount() {
+        return restarts;
+    }
+
+    /**
+     * Getter function. return the number of clauses learned.
+     * @return the number of learned clauses, deleted ones included
+     */
+    public long getLearnedCount() {
+        return learned;
+    }
+
+    /**
+     * The value of a literal.
+     * @param lit the literal
+     * @return 1 if true, -1 if false, 0 if its variable is unassigned
+     */
+    private int value(int lit) {
+        int v = assign[lit >> 1];
+        return (lit & 1) == 0 ? v : -v;
+    }
+
+    /**
+     * Make a literal true.
+     * @param lit the literal
+     * @param from the clause that forced it, or -1 for a decision
+     */
+    private void enqueue(int lit, int from) {
+        int v = lit >> 1;
+        assign[v] = (byte) ((lit & 1) == 0 ? 1 : -1);
+        level[v] = levels;
+        reason[v] = from;
+        trail[trailSize++] = lit;
+    }
+
+    /**
+     * Store a clause of two or more literals and watch its first two.
+     * @param c the literals
+     * @param clauseLbd the levels a learned clause ties, 0 for a clause of
+     *                  the formula
+     * @return the clause number
+     */
+    private int addStored(int[] c, int clauseLbd) {
+        int ci = clauses.size();
+        clauses.add(c);
+        if (ci == lbd.length) {
+            lbd = Arrays.copyOf(lbd, 2 * ci);
+        }
+        lbd[ci] = clauseLbd;
+        watch(c[0], ci);
+        watch(c[1], ci);
+        return ci;
+    }
+
+    /**
+     * Add a clause to the watch list of a literal.
+     * @param lit the literal
+     * @param ci the clause number
+     */
+    private void watch(int lit, int ci) {
+        if (watchSize[lit] == watches[lit].length) {
+            watches[lit] = Arrays.copyOf(watches[lit], 2 * watchSize[lit]);
+        }
+        watches[lit][watchSize[lit]++] = ci;
+    }
+
+    /**
+     * Follow the literals on the trail that have not been propagated yet.
+     * @return the number of a clause that became false, or -1
+     */
+    private int propagate() {
+        int conflict = -1;
+        while (qhead < trailSize) {
+            int falseLit = trail[qhead++] ^ 1;
+            propagations++;
+            int[] ws = watches[falseLit];
+            int n = watchSize[falseLit];
+            int i = 0;
+            int j = 0;
+            while (i < n) {
+                int ci = ws[i++];
+                int[] c = clauses.get(ci);
+                if (c == null) {
+                    continue;
+                }
+                if (c[0] == falseLit) {
+                    c[0] = c[1];
+                    c[1] = falseLit;
+                }
+                if (value(c[0]) == 1) {
+                    ws[j++] = ci;
+                    continue;
+                }
+                boolean moved = false;
+                for (int k = 2; k < c.length; k++) {
+                    if (value(c[k]) != -1) {
+                        c[1] = c[k];
+                        c[k] = falseLit;
+                        watch(c[1], ci);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) {
+                    continue;
+                }
+                ws[j++] = ci;
+                if (value(c[0]) == -1) {
+                    conflict = ci;
+                    qhead = trailSize;
+                    while (i < n) {
+                        ws[j++] = ws[i++];
+                    }
+                } else {
+                    enqueue(c[0], ci);
+                }
+            }
+            watchSize[falseLit] = j;
+        }
+        return conflict;
+    }
+
+    /**
+     * Learn a clause from a conflict.  The clause goes in learnt, with the
+     * literal that it will force first and the one of the highest other
+     * level second.
+     * @param conflict the clause that became false
+     * @return the level to go back to
+     */
+    private int analyze(int conflict) {
+        learntSize = 1;
+        int pathCount = 0;
+        int p = -1;
+        int index = trailSize - 1;
+        int ci = conflict;
+        do {
+            int[] c = clauses.get(ci);
+            for (int k = p == -1 ? 0 : 1; k < c.length; k++) {
+                int q = c[k];
+                int v = q >> 1;
+                if (!seen[v] && level[v] > 0) {
+                    bump(v);
+                    seen[v] = true;
+                    if (level[v] >= levels) {
+                        pathCount++;
+                    } else {
+                        learnt[learntSize++] = q;
+                    }
+                }
+            }
+            while (!seen[trail[index] >> 1]) {
+                index--;
+            }
+            p = trail[index--];
+            ci = reason[p >> 1];
+            seen[p >> 1] = false;
+            pathCount--;
+        } while (pathCount > 0);
+        learnt[0] = p ^ 1;
+
+        // move the literals that are implied by the others to the end,
+        // where they are dropped once their marks are cleared
+        int size = 1;
+        for (int k = 1; k < learntSize; k++) {
+            if (!redundant(learnt[k])) {
+                int tmp = learnt[size];
+                learnt[size++] = learnt[k];
+                learnt[k] = tmp;
+            }
+        }
+        for (int k = 1; k < learntSize; k++) {
+            seen[learnt[k] >> 1] = false;
+        }
+        learntSize = size;
+
+        int back = 0;
+        for (int k = 1; k < learntSize; k++) {
+            if (level[learnt[k] >> 1] > back) {
+                back = level[learnt[k] >> 1];
+                int tmp = learnt[1];
+                learnt[1] = learnt[k];
+                learnt[k] = tmp;
+            }
+        }
+        return back;
+    }
+
+    /**
+     * Can a literal of a learned clause be left out, because the clause
+     * that forced it only holds literals already in the learned clause?
+     * @param lit the literal
+     * @return true if it can be left out
+     */
+    private boolean redundant(int lit) {
+        int ci = reason[lit >> 1];
+        if (ci == -1) {
+            return false;
+        }
+        int[] c = clauses.get(ci);
+        for (int k = 1; k < c.length; k++) {
+            int v = c[k] >> 1;
+            if (!seen[v] && level[v] > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Count the different levels of the literals in learnt.
+     * @return the number of levels
+     */
+    private int countLevels() {
+        stamp++;
+        int n = 0;
+        for (int k = 0; k < learntSize; k++) {
+            int l = level[learnt[k] >> 1];
+            if (levelStamp[l] != stamp) {
+                levelStamp[l] = stamp;
+                n++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Undo the assignment down to a level, saving the values as the
+     * phases of the variables.
+     * @param target the level to keep
+     */
+    private void cancelUntil(int target) {
+        if (levels <= target) {
+            return;
+        }
+        for (int k = trailSize - 1; k >= trailLim[target]; k--) {
+            int v = trail[k] >> 1;
+            phase[v] = assign[v] == 1;
+            assign[v] = 0;
+            reason[v] = -1;
+            if (heapIndex[v] == -1) {
+                heapInsert(v);
+            }
+        }
+        trailSize = trailLim[target];
+        qhead = trailSize;
+        levels = target;
+    }
+
+    /**
+     * Pick the unassigned variable with the highest activity.
+     * @return the variable, or -1 if all are assigned
+     */
+    private int pickBranch() {
+        while (heapSize > 0) {
+            int v = heapPop();
+            if (assign[v] == 0) {
+                return v;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Forget half of the learned clauses, those that tie the most levels.
+     * Clauses that tie few levels, and clauses that are the reason of a
+     * current value, are kept.  The watch lists drop deleted clauses the
+     * next time they are walked.
+     */
+    private void reduce() {
+        long[] order = new long[learnedLive];
+        int n = 0;
+        for (int ci = 0; ci < clauses.size(); ci++) {
+            int[] c = clauses.get(ci);
+            if (c == null || lbd[ci] <= KEEP_LBD) {
+                continue;
+            }
+            int v = c[0] >> 1;
+            if (reason[v] == ci && value(c[0]) == 1) {
+                continue;
+            }
+            if (n == order.length) {
+                order = Arrays.copyOf(order, 2 * n + 1);
+            }
+            order[n++] = ((long) lbd[ci] << 32) | ci;
+        }
+        Arrays.sort(order, 0, n);
+        for (int k = n / 2; k < n; k++) {
+            clauses.set((int) order[k], null);
+            learnedLive--;
+        }
+    }
+
+    /**
+     * Bump the activity of a variable.
+     * @param v the variable
+     */
+    private void bump(int v) {
+        activity[v] += varInc;
+        if (activity[v] > 1e100) {
+            for (int u = 0; u < vars; u++) {
+                activity[u] *= 1e-100;
+            }
+            varInc *= 1e-100;
+        }
+        if (heapIndex[v] != -1) {
+            heapUp(heapIndex[v]);
+        }
+    }
+
+    /**
+     * Put a variable back in the heap of decision candidates.
+     * @param v the variable
+     */
+    private void heapInsert(int v) {
+        heap[heapSize] = v;
+        heapIndex[v] = heapSize;
+        heapUp(heapSize++);
+    }
+
+    /**
+     * Take the variable with the highest activity out of the heap.
+     * @return the variable
+     */
+    private int heapPop() {
+        int top = heap[0];
+        heapIndex[top] = -1;
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndex[heap[0]] = 0;
+            heapDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * Move a heap entry up while it is more active than its parent.
+     * @param i the position in the heap
+     */
+    private void heapUp(int i) {
+        int v = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (activity[heap[parent]] >= activity[v]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            heapIndex[heap[i]] = i;
+            i = parent;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    /**
+     * Move a heap entry down while a child is more active.
+     * @param i the position in the heap
+     */
+    private void heapDown(int i) {
+        int v = heap[i];
+        while (2 * i + 1 < heapSize) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]]) {
+                child++;
+            }
+            if (activity[heap[child]] <= activity[v]) {
+                break;
+            }
+            heap[i] = heap[child];
+            heapIndex[heap[i]] = i;
+            i = child;
+        }
+        heap[i] = v;
+        heapIndex[v] = i;
+    }
+
+    /**
+     * The Luby sequence 1 1 2 1 1 2 4 1 1 2 ...
+     * @param i the position in the sequence, from 0
+     * @return the value at that position
+     */
+    private static long luby(long i) {
+        long size = 1;
+        int seq = 0;
+        while (size < i + 1) {
+            seq++;
+            size = 2 * size + 1;
+        }
+        while (size - 1 != i) {
+            size = (size - 1) >> 1;
+            seq--;
+            i = i % size;
+        }
+        return 1L << seq;
+    }
+}
@@ -30,4 +30,18 @@ public interface Configuration {
      * @return true if goal; false otherwise
      */
     public boolean isGoal();
+
+    /**
+     * Get the grid that shows this configuration.
+     * @return the grid of the configuration
+     */
+    public String[][] getGrid();
+
+    /**
+     * Get the reason the last call to isValid returned false.
+     * @return the reason, or UNKNOWN if the configuration does not say
+     */
+    public default PruneReason getPruneReason() {
+        return PruneReason.UNKNOWN;
+    }
 }
\ No newline at end of file
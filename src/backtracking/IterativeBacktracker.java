@@ -0,0 +1,652 @@
+package backtracking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The same backtracking algorithm as Backtracker, without the recursion.
+ * Each solver keeps its own stack of frames, one per level of the
+ * search, so the depth of the search is only bounded by memory and not
+ * by the size of the thread's stack.  A 200x200 safe is 40,000 levels
+ * deep, which the recursive solvers can not reach.
+ *
+ * The frames live in arrays that are kept from one call to the next and
+ * only grow when a search goes deeper than any before it, so a frame
+ * costs no object of its own.  For solveInPlace a frame is just two
+ * ints, the branch being tried and the number of branches; for the
+ * Configuration solvers it is the configuration and the iterator over
+ * its successors.
+ *
+ * Only solveInPlace is safe at any depth.  The Configuration solvers
+ * hold on to a configuration per level, and every successor is a new
+ * object, so their memory grows with the depth times the size of a
+ * configuration.  A SafeConfig copies its whole grid, and on a 200x200
+ * safe a Configuration solver runs out of memory where the recursive
+ * one would run out of stack.  Use solveInPlace on a SafeBoard for big
+ * safes.
+ *
+ * Every solver looks at the configurations in the same order as its
+ * recursive version, prints the same debugging output, counts the same
+ * nodes and finds the same solution.
+ *
+ * Because the whole state of a search is in its frames, a search can
+ * also stop at a goal and carry on from there later.  solutions streams
+ * every solution of a safe that way, one at a time as the stream asks
+ * for them, and countSolutions counts them, up to a limit, without
+ * keeping any of them.  A goal is never searched below, so every
+ * solution is met once.
+ *
+ * The in-place solvers can use a TranspositionTable.  When a level is
+ * left without a goal found below it, the hash of its configuration is
+ * stored as a dead end, and a valid configuration whose hash is in the
+ * table is skipped like an invalid one.  This only pays off for
+ * configurations that keep a state hash, such as a SafeBoard with state
+ * hashing on.  A skipped configuration counts in the metrics as an
+ * invalid successor that was a dead end.
+ *
+ * The metrics count the same things as those of Backtracker.  solve,
+ * solveWithPath, solveInPlace and the in-place countSolutions send the
+ * Flight Recorder events of a search; a stream of solutions only counts.
+ *
+ * solve, solveWithPath and solveInPlace can also be given a SolveBudget,
+ * as with Backtracker.
+ */
+public class IterativeBacktracker {
+
+    private boolean debug;
+    private final SolveMetrics metrics;
+
+    // the frames of solve and solveWithPath
+    private final Search search;
+
+    // the frames of the in-place solvers
+    private int[] branch;
+    private int[] branches;
+    private long[] entered;
+
+    private TranspositionTable table;
+
+    // the budget of the solve that is running, if it has one
+    private SolveBudget budget;
+    private long deadline;
+    private SolveStatus stopped;
+
+    /**
+     * Initialize a new backtracker.
+     *
+     * @param debug Is debugging output enabled?
+     */
+    public IterativeBacktracker(boolean debug) {
+        this.debug = debug;
+        this.metrics = new SolveMetrics("IterativeBacktracker");
+        this.search = new Search();
+        this.branch = new int[64];
+        this.branches = new int[64];
+        this.entered = new long[64];
+        if (this.debug) {
+            System.out.println("Backtracker debugging enabled...");
+        }
+    }
+
+    /**
+     * Getter function. return how many configurations the solvers have
+     * looked at since this backtracker was made or last reset.
+     *
+     * @return the number of nodes expanded
+     */
+    public long getNodeCount() {
+        return this.metrics.getNodes();
+    }
+
+    /**
+     * Start counting nodes, and everything else the metrics count, from
+     * zero again.
+     */
+    public void resetNodeCount() {
+        this.metrics.reset();
+    }
+
+    /**
+     * Getter function. return the counts of the searches since this
+     * backtracker was made or last reset.
+     *
+     * @return the metrics, which keep counting as the solvers run
+     */
+    public SolveMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Setter function. turn the timing of the phases of the search on or
+     * off.  It is off by default.
+     *
+     * @param timing true to time every phase
+     */
+    public void setPhaseTiming(boolean timing) {
+        this.metrics.setPhaseTiming(timing);
+    }
+
+    /**
+     * Setter function. set the table the in-place solvers keep their dead
+     * ends in.  The table is kept from one search to the next, so it must
+     * be cleared before searching a different puzzle with it.
+     *
+     * @param table the table, or null to search without one
+     */
+    public void setTranspositionTable(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Getter function. return the table of the in-place solvers.
+     *
+     * @return the table, or null if there is none
+     */
+    public TranspositionTable getTranspositionTable() {
+        return this.table;
+    }
+
+    /**
+     * A utility routine for printing out various debug messages.
+     *
+     * @param msg    The type of config being looked at (current, goal,
+     *               successor, e.g.)
+     * @param config The config to display
+     */
+    private void debugPrint(String msg, Object config) {
+        if (this.debug) {
+            System.out.println(msg + ":\n" + config);
+        }
+    }
+
+    /**
+     * Try find a solution, if one exists, for a given configuration.
+     *
+     * @param config A valid configuration
+     * @return A solution config, or empty if no solution
+     */
+    public Optional<Configuration> solve(Configuration config) {
+        metrics.begin(config);
+        search.start(config);
+        int top = search.next();
+        Optional<Configuration> sol = top < 0 ? Optional.empty() : Optional.of(search.configs[top]);
+        search.clear();
+        metrics.end(sol.isPresent());
+        return sol;
+    }
+
+    /**
+     * Try find a solution, and count how the search went.  The counts
+     * start from zero, like after resetNodeCount.
+     *
+     * @param config A valid configuration
+     * @return the solution config, or empty if no solution, with the
+     * metrics of the search
+     */
+    public SolveResult<Configuration> solveWithMetrics(Configuration config) {
+        return solve(config, new SolveBudget());
+    }
+
+    /**
+     * Try find a solution within a budget.  The counts start from zero,
+     * like after resetNodeCount.
+     *
+     * @param config A valid configuration
+     * @param budget the limits of the search
+     * @return the solution config, or empty if there is none or the
+     * budget ran out first, with how the search ended and its metrics
+     */
+    public SolveResult<Configuration> solve(Configuration config, SolveBudget budget) {
+        metrics.reset();
+        startBudget(budget);
+        try {
+            Optional<Configuration> sol = solve(config);
+            return new SolveResult<>(status(sol.isPresent()), sol, new SolveMetrics(metrics));
+        } finally {
+            this.budget = null;
+            this.stopped = null;
+        }
+    }
+
+    /**
+     * Find a goal configuration if it exists, and how to get there.  The
+     * path is built the way Backtracker.solveWithPath builds it: it
+     * starts after the given configuration and leaves out a step that
+     * shows the same grid as the step after it.
+     *
+     * @param current the starting configuration
+     * @return a list of configurations to get to a goal configuration;
+     * an empty list if there is none.
+     */
+    public List<Configuration> solveWithPath(Configuration current) {
+        metrics.begin(current);
+        search.start(current);
+        int top = search.next();
+        List<Configuration> path = new ArrayList<>();
+        if (top >= 0) {
+            // built from the goal back and turned around once, since adding
+            // at the front of the list each time costs a copy of it
+            path.add(search.configs[top]);
+            for (int level = top - 1; level > 0; level--) {
+                if (!Arrays.deepEquals(path.get(path.size() - 1).getGrid(), search.configs[level].getGrid())) {
+                    path.add(search.configs[level]);
+                }
+            }
+            Collections.reverse(path);
+        }
+        search.clear();
+        metrics.end(!path.isEmpty());
+        return path;
+    }
+
+    /**
+     * Find a goal configuration and how to get there, within a budget.
+     * The counts start from zero, like after resetNodeCount.
+     *
+     * @param current the starting configuration
+     * @param budget the limits of the search
+     * @return the path to a goal configuration, as solveWithPath makes
+     * it, or empty if there is none or the budget ran out first, with how
+     * the search ended and its metrics
+     */
+    public SolveResult<List<Configuration>> solveWithPath(Configuration current, SolveBudget budget) {
+        metrics.reset();
+        startBudget(budget);
+        try {
+            List<Configuration> path = solveWithPath(current);
+            return new SolveResult<>(status(!path.isEmpty()),
+                    path.isEmpty() ? Optional.empty() : Optional.of(path), new SolveMetrics(metrics));
+        } finally {
+            this.budget = null;
+            this.stopped = null;
+        }
+    }
+
+    /**
+     * Stream every solution of a configuration.  The search only runs as
+     * far as the stream asks it to, so taking the first few solutions of
+     * a safe with many costs no more than finding those few, and the
+     * solutions that have been passed on are not kept.  The stream is
+     * sequential and has its own frames, so several can be open at once.
+     *
+     * @param config A valid configuration
+     * @return the solution configs, in the order the search meets them
+     */
+    public Stream<Configuration> solutions(Configuration config) {
+        Search stream = new Search();
+        stream.start(config);
+        Spliterator<Configuration> split = new Spliterators.AbstractSpliterator<Configuration>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Configuration> action) {
+                int top = stream.next();
+                if (top < 0) {
+                    return false;
+                }
+                action.accept(stream.configs[top]);
+                return true;
+            }
+        };
+        return StreamSupport.stream(split, false);
+    }
+
+    /**
+     * Count the solutions of a configuration, stopping once a limit is
+     * reached.  A limit of 2 tells whether a safe has a unique solution.
+     *
+     * @param config A valid configuration
+     * @param limit the most solutions to count
+     * @return the number of solutions, or the limit if there are that
+     * many or more
+     */
+    public long countSolutions(Configuration config, long limit) {
+        return solutions(config).limit(limit).count();
+    }
+
+    /**
+     * Try find a solution, if one exists, by changing a single
+     * configuration in place, the way Backtracker.solveInPlace does.
+     *
+     * @param config A valid configuration, at the start of its search
+     * @return true if a solution was found; the configuration is then
+     * left in the goal state.  false if there is no solution; the
+     * configuration is then back where it started.
+     */
+    public boolean solveInPlace(UndoableConfiguration config) {
+        metrics.begin(config);
+        boolean solved = searchInPlace(config, 1, true) == 1;
+        metrics.end(solved);
+        return solved;
+    }
+
+    /**
+     * Try find a solution in place, and count how the search went.  The
+     * counts start from zero, like after resetNodeCount.
+     *
+     * @param config A valid configuration, at the start of its search
+     * @return the configuration in its goal state, or empty if there is
+     * no solution, with the metrics of the search
+     */
+    public SolveResult<UndoableConfiguration> solveInPlaceWithMetrics(UndoableConfiguration config) {
+        return solveInPlace(config, new SolveBudget());
+    }
+
+    /**
+     * Try find a solution in place within a budget.  The counts start
+     * from zero, like after resetNodeCount.
+     *
+     * @param config A valid configuration, at the start of its search
+     * @param budget the limits of the search
+     * @return the configuration in its goal state, or empty if there is
+     * no solution or the budget ran out first, with how the search ended
+     * and its metrics.  Without a solution the configuration is back
+     * where it started.
+     */
+    public SolveResult<UndoableConfiguration> solveInPlace(UndoableConfiguration config,
+                                                           SolveBudget budget) {
+        metrics.reset();
+        startBudget(budget);
+        try {
+            boolean solved = solveInPlace(config);
+            return new SolveResult<>(status(solved), solved ? Optional.of(config) : Optional.empty(),
+                    new SolveMetrics(metrics));
+        } finally {
+            this.budget = null;
+            this.stopped = null;
+        }
+    }
+
+    /**
+     * Count the solutions of a configuration that is changed in place,
+     * stopping once a limit is reached.  Nothing is allocated and no grid
+     * is built, so this is the cheapest way to check that a safe has a
+     * unique solution: a limit of 2.
+     *
+     * @param config A valid configuration, at the start of its search
+     * @param limit the most solutions to count
+     * @return the number of solutions, or the limit if there are that
+     * many or more.  The configuration is back where it started.
+     */
+    public long countSolutions(UndoableConfiguration config, long limit) {
+        metrics.begin(config);
+        long found = searchInPlace(config, limit, false);
+        metrics.end(found > 0);
+        return found;
+    }
+
+    /**
+     * Run the search of the in-place solvers.
+     *
+     * @param config A valid configuration, at the start of its search
+     * @param limit the number of goals to stop at
+     * @param stay true to leave the configuration in the last goal found
+     *             when the limit is reached
+     * @return the number of goals found, at most the limit
+     */
+    private long searchInPlace(UndoableConfiguration config, long limit, boolean stay) {
+        if (limit <= 0 || outOfBudget()) {
+            return 0;
+        }
+        metrics.node(0);
+        debugPrint("Current config", config);
+        long start = metrics.startPhase();
+        boolean goal = config.isGoal();
+        metrics.endPhase(SolveMetrics.Phase.GOAL, start);
+        if (goal) {
+            debugPrint("\tGoal config", config);
+            return 1;
+        }
+        long found = 0;
+        int level = 0;
+        branch[0] = 0;
+        branches[0] = config.getBranchCount();
+        while (true) {
+            if (branch[level] == branches[level]) {
+                // backtracking is the undo of the branch one level up
+                metrics.backtrack();
+                if (level == 0) {
+                    return found;
+                }
+                if (table != null && found == entered[level] && config.getStateHash() != 0) {
+                    table.add(config.getStateHash());
+                }
+                level--;
+                config.undo();
+                continue;
+            }
+            metrics.successor();
+            start = metrics.startPhase();
+            config.apply(branch[level]++);
+            metrics.endPhase(SolveMetrics.Phase.SUCCESSORS, start);
+            start = metrics.startPhase();
+            boolean valid = config.isValid();
+            metrics.endPhase(SolveMetrics.Phase.VALIDITY, start);
+            if (valid && table != null && config.getStateHash() != 0
+                    && table.contains(config.getStateHash())) {
+                metrics.invalid(PruneReason.DEAD_END);
+                debugPrint("\tDead end successor", config);
+                config.undo();
+            } else if (valid) {
+                debugPrint("\tValid successor", config);
+                if (outOfBudget()) {
+                    config.undo();
+                    for (; level > 0; level--) {
+                        config.undo();
+                    }
+                    return found;
+                }
+                metrics.node(level + 1);
+                debugPrint("Current config", config);
+                start = metrics.startPhase();
+                goal = config.isGoal();
+                metrics.endPhase(SolveMetrics.Phase.GOAL, start);
+                if (goal) {
+                    debugPrint("\tGoal config", config);
+                    found++;
+                    if (found == limit) {
+                        if (!stay) {
+                            config.undo();
+                            for (; level > 0; level--) {
+                                config.undo();
+                            }
+                        }
+                        return found;
+                    }
+                    config.undo();
+                    continue;
+                }
+                level++;
+                if (level == branch.length) {
+                    branch = Arrays.copyOf(branch, 2 * level);
+                    branches = Arrays.copyOf(branches, 2 * level);
+                    entered = Arrays.copyOf(entered, 2 * level);
+                }
+                branch[level] = 0;
+                branches[level] = config.getBranchCount();
+                entered[level] = found;
+            } else {
+                metrics.invalid(config.getPruneReason());
+                debugPrint("\tInvalid successor", config);
+                config.undo();
+            }
+        }
+    }
+
+    /**
+     * Start keeping a solve within a budget.
+     *
+     * @param budget the limits of the solve
+     */
+    private void startBudget(SolveBudget budget) {
+        this.budget = budget;
+        this.deadline = budget.deadline();
+        this.stopped = null;
+    }
+
+    /**
+     * Has the solve that is running used up its budget?  Once it has, it
+     * stays that way until the solve returns.
+     *
+     * @return true if the solve must stop
+     */
+    private boolean outOfBudget() {
+        if (budget != null && stopped == null) {
+            stopped = budget.check(metrics.getNodes(), deadline);
+        }
+        return stopped != null;
+    }
+
+    /**
+     * How the solve that is running ended.
+     *
+     * @param solved true if it found a goal
+     * @return the status
+     */
+    private SolveStatus status(boolean solved) {
+        if (solved) {
+            return SolveStatus.SOLVED;
+        }
+        return stopped != null ? stopped : SolveStatus.UNSOLVABLE;
+    }
+
+    /**
+     * The frames of a search over configurations, which can stop at a
+     * goal and carry on from it.
+     */
+    private class Search {
+        private Configuration[] configs;
+        private Iterator<?>[] successors;
+        private int top;
+        private boolean started;
+
+        /**
+         * constructor. create the frames, with room for 64 levels.
+         */
+        Search() {
+            this.configs = new Configuration[64];
+            this.successors = new Iterator<?>[64];
+            this.top = -1;
+        }
+
+        /**
+         * Set up a search from a configuration.
+         * @param config A valid configuration
+         */
+        void start(Configuration config) {
+            configs[0] = config;
+            top = 0;
+            started = false;
+        }
+
+        /**
+         * Search on to the next goal.  A goal has no successors, so the
+         * search carries on from one by dropping it.
+         * @return the level of the goal, whose frames from the start down
+         * to it are on the stack; or -1 if there are no more
+         */
+        int next() {
+            if (!started) {
+                started = true;
+                if (outOfBudget()) {
+                    return -1;
+                }
+                metrics.node(0);
+                debugPrint("Current config", configs[0]);
+                if (isGoal(configs[0])) {
+                    debugPrint("\tGoal config", configs[0]);
+                    successors[0] = null;
+                    return 0;
+                }
+                successors[0] = successorsOf(configs[0]);
+            }
+            while (top >= 0) {
+                if (successors[top] == null || !successors[top].hasNext()) {
+                    // implicit backtracking happens here; a goal has no
+                    // successors and is not backed up from
+                    if (successors[top] != null) {
+                        metrics.backtrack();
+                    }
+                    configs[top] = null;
+                    successors[top] = null;
+                    top--;
+                    continue;
+                }
+                Configuration child = (Configuration) successors[top].next();
+                metrics.successor();
+                long start = metrics.startPhase();
+                boolean valid = child.isValid();
+                metrics.endPhase(SolveMetrics.Phase.VALIDITY, start);
+                if (valid) {
+                    debugPrint("\tValid successor", child);
+                    if (outOfBudget()) {
+                        // the frames are left for clear
+                        return -1;
+                    }
+                    metrics.node(top + 1);
+                    debugPrint("Current config", child);
+                    top++;
+                    if (top == configs.length) {
+                        configs = Arrays.copyOf(configs, 2 * top);
+                        successors = Arrays.copyOf(successors, 2 * top);
+                    }
+                    configs[top] = child;
+                    if (isGoal(child)) {
+                        debugPrint("\tGoal config", child);
+                        successors[top] = null;
+                        return top;
+                    }
+                    successors[top] = successorsOf(child);
+                } else {
+                    metrics.invalid(child.getPruneReason());
+                    debugPrint("\tInvalid successor", child);
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Is a configuration a goal?  The check is timed as a phase.
+         * @param config the configuration
+         * @return true if it is a goal
+         */
+        private boolean isGoal(Configuration config) {
+            long start = metrics.startPhase();
+            boolean goal = config.isGoal();
+            metrics.endPhase(SolveMetrics.Phase.GOAL, start);
+            return goal;
+        }
+
+        /**
+         * Make the successors of a configuration.  This is timed as a
+         * phase.
+         * @param config the configuration
+         * @return an iterator over the successors
+         */
+        private Iterator<?> successorsOf(Configuration config) {
+            long start = metrics.startPhase();
+            Iterator<?> next = config.getSuccessors().iterator();
+            metrics.endPhase(SolveMetrics.Phase.SUCCESSORS, start);
+            return next;
+        }
+
+        /**
+         * Drop the frames left on the stack, so the configurations they
+         * hold can be collected.
+         */
+        void clear() {
+            for (; top >= 0; top--) {
+                configs[top] = null;
+                successors[top] = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package backtracking;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A backtracker that searches on several threads.  The top of the search
+ * tree is cut into tasks on a ForkJoinPool: every configuration with more
+ * than one valid successor forks a task per successor, until the cutoff
+ * number of such splits has been made, and below that each task searches
+ * its subtree the same way Backtracker does.  Idle threads steal the
+ * tasks that are still waiting, so a subtree that turns out big is shared
+ * out while a small one finishes on its own.
+ *
+ * As soon as one task reaches a goal the others stop at their next node,
+ * and any task that has not started yet is cancelled.  solve returns
+ * once every task has stopped, so the node count it leaves is that of
+ * the whole search; a backtracker runs one solve at a time.  Which goal
+ * is found first depends on the timing of the threads, so when a puzzle
+ * has several solutions this may not be the one Backtracker finds.  When
+ * there is no solution, the whole tree is searched, spread over all the
+ * threads.
+ */
+public class ParallelBacktracker {
+
+    private final ForkJoinPool pool;
+    private final int cutoff;
+    private final LongAdder nodes;
+
+    /**
+     * Initialize a new parallel backtracker with its own pool.
+     *
+     * @param parallelism the number of threads to search on
+     * @param cutoff how many levels of splits are turned into tasks before
+     *               the tasks search sequentially
+     */
+    public ParallelBacktracker(int parallelism, int cutoff) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.cutoff = cutoff;
+        this.nodes = new LongAdder();
+    }
+
+    /**
+     * Getter function. return the number of threads the search runs on.
+     * @return the parallelism of the pool
+     */
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Getter function. return how many levels of splits become tasks.
+     * @return the depth cutoff
+     */
+    public int getCutoff() {
+        return cutoff;
+    }
+
+    /**
+     * Getter function. return how many configurations the last search
+     * looked at, over all threads.
+     * @return the number of nodes expanded
+     */
+    public long getNodeCount() {
+        return nodes.sum();
+    }
+
+    /**
+     * Try find a solution, if one exists, for a given configuration.
+     *
+     * @param config A valid configuration
+     * @return A solution config, or empty if no solution
+     */
+    public Optional<Configuration> solve(Configuration config) {
+        nodes.reset();
+        AtomicReference<Configuration> found = new AtomicReference<>();
+        pool.invoke(new SearchTask(config, 0, found));
+        // the tasks cancelled while running stop at their next node
+        pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        return Optional.ofNullable(found.get());
+    }
+
+    /**
+     * Stop the threads of the pool once the running searches are done.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * The search of one subtree.
+     */
+    private class SearchTask extends RecursiveTask<Configuration> {
+        private static final long serialVersionUID = 1L;
+
+        private final Configuration config;
+        private final int splits;
+        private final AtomicReference<Configuration> found;
+
+        /**
+         * constructor. create the task for the subtree below a configuration.
+         * @param config the root of the subtree, already known to be valid
+         * @param splits how many splits were made above this task
+         * @param found where the first goal found by any task is put
+         */
+        SearchTask(Configuration config, int splits, AtomicReference<Configuration> found) {
+            this.config = config;
+            this.splits = splits;
+            this.found = found;
+        }
+
+        @Override
+        protected Configuration compute() {
+            Configuration current = config;
+            // walk down while there is nothing to split
+            while (found.get() == null) {
+                nodes.increment();
+                if (current.isGoal()) {
+                    found.compareAndSet(null, current);
+                    return current;
+                }
+                if (splits >= cutoff) {
+                    return search(current);
+                }
+                List<Configuration> valid = new ArrayList<>();
+                for (Configuration child : current.getSuccessors()) {
+                    if (child.isValid()) {
+                        valid.add(child);
+                    }
+                }
+                if (valid.isEmpty()) {
+                    return null;
+                }
+                if (valid.size() == 1) {
+                    current = valid.get(0);
+                    continue;
+                }
+
+                List<SearchTask> tasks = new ArrayList<>(valid.size());
+                for (Configuration child : valid) {
+                    tasks.add(new SearchTask(child, splits + 1, found));
+                }
+                for (int i = tasks.size() - 1; i > 0; i--) {
+                    tasks.get(i).fork();
+                }
+                Configuration sol = tasks.get(0).compute();
+                for (int i = 1; i < tasks.size(); i++) {
+                    if (sol != null || found.get() != null) {
+                        tasks.get(i).cancel(false);
+                    } else {
+                        sol = tasks.get(i).join();
+                    }
+                }
+                return sol;
+            }
+            return null;
+        }
+
+        /**
+         * Search a subtree on this thread, giving up as soon as another
+         * task has found a goal.
+         * @param current a valid configuration
+         * @return a goal, or null if there is none or another task won
+         */
+        private Configuration search(Configuration current) {
+            for (Configuration child : current.getSuccessors()) {
+                if (found.get() != null) {
+                    return null;
+                }
+                if (child.isValid()) {
+                    nodes.increment();
+                    if (child.isGoal()) {
+                        found.compareAndSet(null, child);
+                        return child;
+                    }
+                    Configuration sol = search(child);
+                    if (sol != null) {
+                        return sol;
+                    }
+                }
+            }
+            return null;
+        }
+    }
+}
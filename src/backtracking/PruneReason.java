@@ -0,0 +1,22 @@
+package backtracking;
+
+/**
+ * Why a configuration was found not to be valid, so a search can count
+ * the branches it cut off by what cut them off.
+ */
+public enum PruneReason {
+    /** a laser shines on another laser */
+    LASER_CONFLICT,
+    /** a numbered pillar has too many lasers, or can no longer get enough */
+    PILLAR,
+    /** a cell is not lit and nothing is left that could light it */
+    UNCOVERED,
+    /** the propagator found the decisions lead nowhere */
+    PROPAGATION,
+    /** every cell is decided, but the safe does not verify */
+    INCOMPLETE,
+    /** the configuration is in the table of known dead ends */
+    DEAD_END,
+    /** the configuration does not say why */
+    UNKNOWN
+}
@@ -0,0 +1,463 @@
+package backtracking;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * This is the main class for solving many safes in one run, so the cost
+ * of starting the JVM is paid once and not once per safe.  The safes are
+ * given as files, directories of files, or both.  A SafePack file stands
+ * for all the safes in it, which are read out of the mapped pack and not
+ * parsed.
+ *
+ * Every safe goes through four stages: parse the file, solve the safe,
+ * verify the solution, and write the result.  Each stage has its own
+ * thread pool, with its own number of threads, so a safe can be parsed
+ * while the one before it is being solved.  A stage only ever runs on
+ * its own threads, and takes a bounded number of safes at a time: a
+ * safe waits for room in the next stage on the thread of the stage it
+ * is done with, and a new safe waits for room in the parse stage, so a
+ * directory of any size is streamed through without being read into
+ * memory all at once.
+ *
+ * The results are printed in the order the safes were given, whatever
+ * order they finish in, with the time each stage took.  At the end the
+ * throughput of the whole run and the 50th and 99th percentile of the
+ * time a safe spent in the pipeline are printed.
+ *
+ * The safes are solved by a SafeBoard that propagates and branches on
+ * the most constrained cell.  With an output directory, every solution
+ * is written there in the same format as the safe, under the path of its
+ * file as it was given with ".sol" added, so safes of two directories
+ * with the same file names do not write over each other; otherwise the
+ * write stage only formats it.  A safe whose name is taken all the same
+ * gets its number in the run added.
+ *
+ * A timeout and a node limit per safe keep a hard safe from holding a
+ * solve thread for good.  A safe that runs out of either is reported as
+ * timed out or over its node limit, with the nodes it got through, and
+ * the thread moves on to the next safe.
+ *
+ * Every safe is looked up in the shared SolutionCache before it is
+ * searched, and its solution is kept there, so a safe that was solved in
+ * an earlier run costs only the read of a file.
+ */
+public class SafeBatchSolver {
+    private final static String USAGE = "Usage: java SafeBatchSolver [-parse n] [-solve n] "
+            + "[-verify n] [-write n] [-out dir] [-timeout ms] [-nodes n] safe.in|dir...";
+
+    /** the names of the stages, in the order a safe goes through them */
+    private final static String[] STAGES = { "parse", "solve", "verify", "write" };
+    private final static int PARSE = 0;
+    private final static int SOLVE = 1;
+    private final static int VERIFY = 2;
+    private final static int WRITE = 3;
+
+    /** how many safes a stage holds per thread, waiting or being worked on */
+    private final static int QUEUE_PER_THREAD = 4;
+
+    private final ExecutorService[] pools;
+    private final Semaphore[] room;
+    private final int window;
+    private final Path out;
+    private final SolveBudget budget;
+
+    /**
+     * constructor. create the pools of the stages.
+     * @param threads the number of threads of every stage, in the order
+     *                parse, solve, verify, write
+     * @param out the directory to write the solutions to, or null to not
+     *            write them
+     * @param budget the limits of the solve of every safe
+     */
+    public SafeBatchSolver(int[] threads, Path out, SolveBudget budget) {
+        this.pools = new ExecutorService[STAGES.length];
+        this.room = new Semaphore[STAGES.length];
+        int total = 0;
+        for (int stage = 0; stage < STAGES.length; stage++) {
+            if (threads[stage] < 1) {
+                throw new IllegalArgumentException(STAGES[stage] + " needs at least one thread");
+            }
+            this.pools[stage] = Executors.newFixedThreadPool(threads[stage]);
+            this.room[stage] = new Semaphore(QUEUE_PER_THREAD * threads[stage]);
+            total += threads[stage];
+        }
+        this.window = QUEUE_PER_THREAD * total;
+        this.out = out;
+        this.budget = budget;
+    }
+
+    /**
+     * Solve every safe, and print a line for each in the order they were
+     * given, followed by the totals.
+     * @param files the safe files
+     * @param report where to print
+     */
+    public void run(List<Path> files, PrintStream report) {
+        long start = System.nanoTime();
+        Deque<CompletableFuture<Job>> inFlight = new ArrayDeque<>();
+        List<Job> done = new ArrayList<>();
+        Set<Path> targets = new HashSet<>();
+        for (Path file : files) {
+            SafePack pack = null;
+            IOException damaged = null;
+            if (SafePack.isPack(file)) {
+                try {
+                    pack = new SafePack(file);
+                } catch (IOException e) {
+                    damaged = e;
+                }
+            }
+            for (int i = 0; i < (pack == null ? 1 : pack.getCount()); i++) {
+                if (inFlight.size() == window) {
+                    done.add(print(inFlight.removeFirst().join(), report));
+                }
+                Job job = new Job(file, pack, i);
+                if (damaged != null) {
+                    job.error = STAGES[PARSE] + " failed: " + damaged;
+                }
+                if (out != null) {
+                    String name = file.getFileName() + (pack != null ? "#" + i : "");
+                    Path target = out.resolve(relative(file)).resolveSibling(name + ".sol");
+                    if (!targets.add(target)) {
+                        target = target.resolveSibling(name + "#" + (done.size() + inFlight.size()) + ".sol");
+                        targets.add(target);
+                    }
+                    job.target = target;
+                }
+                inFlight.addLast(submit(job));
+            }
+        }
+        while (!inFlight.isEmpty()) {
+            done.add(print(inFlight.removeFirst().join(), report));
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long[] latency = new long[done.size()];
+        int solved = 0;
+        int exhausted = 0;
+        int failed = 0;
+        for (int i = 0; i < latency.length; i++) {
+            latency[i] = done.get(i).getLatency();
+            if (done.get(i).error != null) {
+                failed++;
+            } else if (done.get(i).lasers != null) {
+                solved++;
+            } else if (done.get(i).status.isExhausted()) {
+                exhausted++;
+            }
+        }
+        Arrays.sort(latency);
+        report.println("Safes: " + done.size() + ", solved: " + solved + ", no solution: "
+                + (done.size() - solved - exhausted - failed) + ", out of budget: " + exhausted
+                + ", errors: " + failed);
+        report.printf("Elapsed time: %.3f seconds, throughput: %.1f safes/sec%n",
+                elapsed / 1e9, done.size() / Math.max(elapsed / 1e9, 1e-9));
+        report.printf("Latency p50: %.3f ms, p99: %.3f ms%n",
+                percentile(latency, 50) / 1e6, percentile(latency, 99) / 1e6);
+        if (SolutionCache.getDefault() != null) {
+            report.println("Solution cache " + SolutionCache.getDefault());
+        }
+    }
+
+    /**
+     * Stop the threads of the stages, once the last run is over.
+     */
+    public void shutdown() {
+        for (ExecutorService pool : pools) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Send a safe down the pipeline.
+     * @param job the safe
+     * @return the safe, once it has gone through every stage
+     */
+    private CompletableFuture<Job> submit(Job job) {
+        CompletableFuture<Job> done = new CompletableFuture<>();
+        room[PARSE].acquireUninterruptibly();
+        pools[PARSE].execute(() -> pass(job, PARSE, done));
+        return done;
+    }
+
+    /**
+     * Run a stage on a safe, on a thread of the stage, and hand the safe
+     * on to the next stage once there is room in it.  The safe keeps its
+     * room in this stage while it waits, so a stage that is behind holds
+     * back the ones before it.
+     * @param job the safe
+     * @param stage PARSE, SOLVE, VERIFY or WRITE
+     * @param done completed with the safe after its last stage
+     */
+    private void pass(Job job, int stage, CompletableFuture<Job> done) {
+        try {
+            stage(job, stage);
+        } catch (Error e) {
+            room[stage].release();
+            done.completeExceptionally(e);
+            throw e;
+        }
+        if (stage + 1 < STAGES.length) {
+            room[stage + 1].acquireUninterruptibly();
+            room[stage].release();
+            pools[stage + 1].execute(() -> pass(job, stage + 1, done));
+        } else {
+            room[stage].release();
+            done.complete(job);
+        }
+    }
+
+    /**
+     * Run a stage on a safe and time it.  A safe that failed an earlier
+     * stage is passed on untouched, and a stage that fails records why.
+     * @param job the safe
+     * @param stage PARSE, SOLVE, VERIFY or WRITE
+     * @return the safe
+     */
+    private Job stage(Job job, int stage) {
+        if (job.error != null) {
+            return job;
+        }
+        long begin = System.nanoTime();
+        if (stage == PARSE) {
+            job.start = begin;
+        }
+        try {
+            switch (stage) {
+                case PARSE:
+                    job.puzzle = job.pack != null ? job.pack.getPuzzle(job.index)
+                            : new SafePuzzle(job.file.toString());
+                    break;
+                case SOLVE:
+                    solve(job);
+                    break;
+                case VERIFY:
+                    if (job.lasers != null && !job.puzzle.isSolution(job.lasers)) {
+                        job.error = "solution does not verify";
+                    }
+                    break;
+                default:
+                    write(job);
+                    break;
+            }
+        } catch (IOException | RuntimeException e) {
+            job.error = STAGES[stage] + " failed: " + e;
+        }
+        job.end = System.nanoTime();
+        job.times[stage] = job.end - begin;
+        return job;
+    }
+
+    /**
+     * The solve stage: search for a solution of the safe.
+     * @param job the safe, parsed
+     */
+    private void solve(Job job) {
+        SolutionCache cache = SolutionCache.getDefault();
+        if (cache != null) {
+            Optional<boolean[]> cached = cache.get(job.puzzle);
+            if (cached.isPresent()) {
+                job.lasers = cached.get();
+                job.status = SolveStatus.SOLVED;
+                return;
+            }
+        }
+        SafeBoard board = new SafeBoard(job.puzzle);
+        board.setPropagation(true);
+        board.setCellOrder(SafeBoard.CellOrder.MOST_CONSTRAINED);
+        if (board.presolve() == null) {
+            job.status = SolveStatus.UNSOLVABLE;
+            return;
+        }
+        IterativeBacktracker bt = new IterativeBacktracker(false);
+        SolveResult<UndoableConfiguration> result = bt.solveInPlace(board, budget);
+        if (result.getSolution().isPresent()) {
+            job.lasers = board.getLasers();
+            if (cache != null) {
+                cache.put(job.puzzle, job.lasers);
+            }
+        }
+        job.status = result.getStatus();
+        job.nodes = result.getMetrics().getNodes();
+    }
+
+    /**
+     * The write stage: format the solution, and write it to the output
+     * directory if there is one.  The file is written under a temporary
+     * name and then moved, so it is either whole or not there.
+     * @param job the safe, solved and verified
+     * @throws IOException if the file can not be written
+     */
+    private void write(Job job) throws IOException {
+        if (job.lasers == null) {
+            return;
+        }
+        String[][] grid = job.puzzle.toGrid(job.lasers);
+        job.result = grid.length + " " + grid[0].length + "\n" + SafePuzzle.format(grid);
+        if (job.target != null) {
+            Files.createDirectories(job.target.getParent());
+            Path temp = SafeFiles.createTemp(job.target);
+            try {
+                Files.write(temp, job.result.getBytes(StandardCharsets.UTF_8));
+                Files.move(temp, job.target, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * The path of a file as it was given, made relative so it can be put
+     * under the output directory: without its root, and without the ".."
+     * it starts with.
+     * @param file the file
+     * @return the relative path
+     */
+    private static Path relative(Path file) {
+        Path path = file.normalize();
+        if (path.getRoot() != null) {
+            path = path.getRoot().relativize(path);
+        }
+        while (path.getNameCount() > 1 && path.getName(0).toString().equals("..")) {
+            path = path.subpath(1, path.getNameCount());
+        }
+        return path;
+    }
+
+    /**
+     * Print the line of a safe.
+     * @param job the safe, done with every stage
+     * @param report where to print
+     * @return the safe
+     */
+    private Job print(Job job, PrintStream report) {
+        String status = job.error != null ? "error (" + job.error + ")"
+                : job.lasers != null ? "solved"
+                : job.status == SolveStatus.TIMED_OUT ? "timed out"
+                : job.status == SolveStatus.NODE_LIMIT ? "over the node limit"
+                : "no solution";
+        StringBuilder line = new StringBuilder(job.getName() + ": " + status);
+        for (int stage = 0; stage < STAGES.length; stage++) {
+            line.append(String.format(", %s %.3f ms", STAGES[stage], job.times[stage] / 1e6));
+        }
+        line.append(String.format(", total %.3f ms, nodes %d", job.getLatency() / 1e6, job.nodes));
+        report.println(line);
+        return job;
+    }
+
+    /**
+     * The nearest-rank percentile of sorted values.
+     * @param sorted the values, from the smallest up
+     * @param p the percentile, from 0 to 100
+     * @return the value, or 0 if there are none
+     */
+    private static long percentile(long[] sorted, int p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1];
+    }
+
+    public static void main(String[] args) throws IOException {
+        int cpus = Runtime.getRuntime().availableProcessors();
+        int[] threads = { 1, cpus, 1, 1 };
+        Path out = null;
+        SolveBudget budget = new SolveBudget();
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            int stage = args[i].startsWith("-") ? Arrays.asList(STAGES).indexOf(args[i].substring(1)) : -1;
+            if (stage >= 0 && i + 1 < args.length) {
+                threads[stage] = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-out") && i + 1 < args.length) {
+                out = Paths.get(args[++i]);
+                Files.createDirectories(out);
+            } else if (args[i].equals("-timeout") && i + 1 < args.length) {
+                budget.setTimeout(Long.parseLong(args[++i]));
+            } else if (args[i].equals("-nodes") && i + 1 < args.length) {
+                budget.setNodeLimit(Long.parseLong(args[++i]));
+            } else {
+                names.add(args[i]);
+            }
+        }
+        if (names.isEmpty()) {
+            System.out.println(USAGE);
+            return;
+        }
+        SafeBatchSolver batch = new SafeBatchSolver(threads, out, budget);
+        batch.run(SafeFiles.collect(names), System.out);
+        batch.shutdown();
+    }
+
+    /**
+     * A safe on its way through the pipeline.  Each stage only runs after
+     * the one before it is done, so the fields are never touched by two
+     * threads at once.
+     */
+    private static class Job {
+        private final Path file;
+        private final SafePack pack;
+        private final int index;
+        private final long[] times;
+        private Path target;
+        private long start;
+        private long end;
+        private SafePuzzle puzzle;
+        private boolean[] lasers;
+        private SolveStatus status;
+        private long nodes;
+        private String result;
+        private String error;
+
+        /**
+         * constructor. create the job of a safe file, or of a safe in a
+         * pack.
+         * @param file the safe file or the pack
+         * @param pack the pack mapped, or null for a safe file
+         * @param index the number of the safe in the pack
+         */
+        Job(Path file, SafePack pack, int index) {
+            this.file = file;
+            this.pack = pack;
+            this.index = index;
+            this.times = new long[STAGES.length];
+        }
+
+        /**
+         * Getter function. return the name of the safe: its file, with
+         * the number of the safe after a '#' for a pack.
+         * @return the name
+         */
+        String getName() {
+            return pack != null ? file + "#" + index : file.toString();
+        }
+
+        /**
+         * Getter function. return how long the safe spent in the pipeline,
+         * from the start of its parse to the end of its last stage.
+         * @return the time in nanoseconds
+         */
+        long getLatency() {
+            return end - start;
+        }
+    }
+}
@@ -0,0 +1,826 @@
+package backtracking;
+
+import java.io.FileNotFoundException;
+import java.util.Random;
+
+/**
+ * A single safe that the backtracker changes in place.  It walks the
+ * cells in the same row-major order as SafeConfig and offers the same
+ * branches, a laser first and then no laser, so it finds the same
+ * solutions, but it never copies itself.
+ *
+ * Every cell that gets decided is pushed on a trail, and every step of
+ * the search remembers where the trail stood when it began.  Undoing a
+ * step pops the cells back off the trail, so only the cells the step
+ * changed are restored.  A cell is decided at most once on any path, so
+ * the trail never holds more than one entry per cell and is allocated
+ * once, up front.
+ *
+ * Beams are not stored: a cell is lit when its row segment or its
+ * column segment holds a laser.
+ *
+ * With propagation turned on, a SafePropagator runs after every step
+ * and decides the cells the step forces.  It pushes them on the same
+ * trail, so undoing the step takes them back as well.
+ *
+ * The board can pick the cells to branch on in two orders.  In
+ * ROW_MAJOR order every step decides the next cell, like SafeConfig.
+ * In MOST_CONSTRAINED order every step looks for the dark cell with the
+ * fewest cells left that could light it, and branches on which of those
+ * gets the laser; the ones tried before are kept dark, so no solution is
+ * found twice.  A cell with a single way left to be lit is settled at
+ * once, and a cell with none ends the branch.
+ *
+ * With state hashing turned on, the board keeps a Zobrist hash of what
+ * is left of the puzzle: which cells are still dark, which of those can
+ * still take a laser, and how many lasers every numbered pillar has.
+ * Lit cells add nothing to it, so boards that got to the same place by
+ * different decisions have the same hash, and whether a solution lies
+ * below a board depends on nothing else.  The hash is updated with every
+ * cell that is decided or opened again, at the cost of a walk over the
+ * segments of every laser.
+ *
+ * With coverage checking on, the board also notices a cell that can no
+ * longer be lit the moment it happens.  Every segment counts its cells
+ * that can still take a laser, and the counts are kept up to date as
+ * cells are decided and lit.  A cell that is not lit needs one of its two
+ * segments to have a cell left, so it only has to be looked at when one
+ * of them runs out; the segment that ran out is then walked, and a cell
+ * in it whose other segment ran out too ends the branch.
+ */
+public class SafeBoard implements UndoableConfiguration {
+    /** The orders in which the board picks the cells to branch on */
+    public enum CellOrder { ROW_MAJOR, MOST_CONSTRAINED };
+
+    /** a cell that has not been decided yet */
+    public final static byte OPEN = 0;
+    /** a cell that holds a laser */
+    public final static byte LASER = 1;
+    /** a cell that was decided to stay without a laser */
+    public final static byte DARK = 2;
+    /** a pillar, which never changes */
+    public final static byte PILLAR = 3;
+
+    private final SafePuzzle puzzle;
+    private final byte[] state;
+    private final int[] segLasers;
+    private final int[] segOpen;
+    private final int[] segFree;
+    private final int[] emptied;
+    private int emptiedSize;
+    private boolean uncovered;
+    private PruneReason reason;
+
+    private final int[] trail;
+    private int trailSize;
+    private final int[] marks;
+    private int depth;
+    private boolean forwardCheck;
+    private boolean coverCheck;
+    private final int[] around;
+    private SafePropagator propagator;
+    private boolean failed;
+    private CellOrder order;
+    private final int[] targets;
+
+    /** the seed of the hash keys, so the hashes are the same every run */
+    private final static long HASH_SEED = 0x5AFEL;
+    private long[] openKey;
+    private long[] darkKey;
+    private long[] pillarKey;
+    private long hash;
+    private final int[] hashAround;
+
+    /**
+     * constructor. read a file and create the starting board.
+     * @param filename file name
+     * @throws FileNotFoundException if file does not exist
+     */
+    public SafeBoard(String filename) throws FileNotFoundException {
+        this(new SafePuzzle(filename));
+    }
+
+    /**
+     * constructor. create the starting board of a safe.
+     * @param puzzle the layout of the safe
+     */
+    public SafeBoard(SafePuzzle puzzle) {
+        this.puzzle = puzzle;
+        int cells = puzzle.getCellCount();
+        this.state = new byte[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            this.state[cell] = puzzle.isPillar(cell) ? PILLAR : OPEN;
+        }
+        this.segLasers = new int[puzzle.getSegmentCount()];
+        this.segOpen = new int[puzzle.getSegmentCount()];
+        for (int cell = 0; cell < cells; cell++) {
+            if (this.state[cell] == OPEN) {
+                this.segOpen[puzzle.getRowSegment(cell)]++;
+                this.segOpen[puzzle.getColSegment(cell)]++;
+            }
+        }
+        this.segFree = this.segOpen.clone();
+        this.emptied = new int[puzzle.getSegmentCount()];
+        this.trail = new int[cells];
+        this.marks = new int[cells + 1];
+        this.trailSize = 0;
+        this.depth = 0;
+        this.forwardCheck = true;
+        this.coverCheck = true;
+        this.around = new int[4];
+        this.order = CellOrder.ROW_MAJOR;
+        this.targets = new int[cells + 1];
+        this.hashAround = new int[4];
+    }
+
+    /**
+     * Setter function. turn the state hash on or off.  It is off by
+     * default; turning it on works out the hash of the board as it is.
+     * @param hashing true to keep the hash up to date
+     */
+    public void setStateHashing(boolean hashing) {
+        if (!hashing) {
+            this.openKey = null;
+            this.darkKey = null;
+            this.pillarKey = null;
+            this.hash = 0;
+            return;
+        }
+        int cells = state.length;
+        Random random = new Random(HASH_SEED);
+        this.openKey = new long[cells];
+        this.darkKey = new long[cells];
+        this.pillarKey = new long[5 * cells];
+        for (int cell = 0; cell < cells; cell++) {
+            this.openKey[cell] = random.nextLong();
+            this.darkKey[cell] = random.nextLong();
+            for (int lasers = 0; lasers < 5; lasers++) {
+                this.pillarKey[5 * cell + lasers] = random.nextLong();
+            }
+        }
+        this.hash = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            this.hash ^= cellKey(cell);
+        }
+    }
+
+    @Override
+    public long getStateHash() {
+        return hash;
+    }
+
+    /**
+     * Setter function. set the order in which cells are branched on.  It
+     * has to be set before the search starts.
+     * @param order ROW_MAJOR, the default, or MOST_CONSTRAINED
+     */
+    public void setCellOrder(CellOrder order) {
+        this.order = order;
+    }
+
+    /**
+     * Setter function. turn the pillar checks on partial configurations
+     * on or off.  They are on by default.
+     * @param forwardCheck true to check the pillars during the search,
+     *                     false to check them only at the last cell
+     */
+    public void setForwardChecking(boolean forwardCheck) {
+        this.forwardCheck = forwardCheck;
+    }
+
+    /**
+     * Setter function. turn the check for cells that can no longer be lit
+     * on or off.  It is on by default.
+     * @param coverCheck true to end a branch as soon as a cell can no
+     *                   longer be lit, false to find out at the last cell
+     */
+    public void setCoverageChecking(boolean coverCheck) {
+        this.coverCheck = coverCheck;
+    }
+
+    /**
+     * Setter function. turn propagation after every step on or off.  It
+     * is off by default.
+     * @param propagate true to let a SafePropagator decide the cells every
+     *                  step forces
+     */
+    public void setPropagation(boolean propagate) {
+        this.propagator = propagate ? new SafePropagator(this) : null;
+    }
+
+    /**
+     * Run the propagator to a fixpoint before the search starts.  The
+     * cells it decides stay decided for the whole search.
+     * @return the propagator, which knows how many cells it fixed; or
+     * null if the safe turned out to have no solution
+     */
+    public SafePropagator presolve() {
+        SafePropagator pre = this.propagator != null ? this.propagator : new SafePropagator(this);
+        this.failed = !pre.propagateAll();
+        return this.failed ? null : pre;
+    }
+
+    /**
+     * Decide a cell and push it on the trail.
+     * @param cell the cell number
+     * @param value LASER or DARK
+     */
+    void decide(int cell, byte value) {
+        if (openKey != null) {
+            rehash(cell, value == LASER);
+        }
+        recount(cell, value == LASER, -1);
+        state[cell] = value;
+        int rowSeg = puzzle.getRowSegment(cell);
+        int colSeg = puzzle.getColSegment(cell);
+        segOpen[rowSeg]--;
+        segOpen[colSeg]--;
+        if (value == LASER) {
+            segLasers[rowSeg]++;
+            segLasers[colSeg]++;
+        }
+        trail[trailSize++] = cell;
+        recount(cell, value == LASER, 1);
+        if (openKey != null) {
+            rehash(cell, value == LASER);
+        }
+        while (emptiedSize > 0) {
+            int seg = emptied[--emptiedSize];
+            if (coverCheck && !uncovered && segFree[seg] == 0 && segLasers[seg] == 0) {
+                uncovered = hasUncoverable(seg);
+            }
+        }
+    }
+
+    /**
+     * Put a laser in a cell and decide every undecided cell in its row
+     * and column segments to stay dark, since its beams shine on them.
+     * @param cell the cell number
+     */
+    void placeLaser(int cell) {
+        decide(cell, LASER);
+        darken(puzzle.getRowSegment(cell));
+        darken(puzzle.getColSegment(cell));
+    }
+
+    /**
+     * Decide every undecided cell of a segment to stay dark.
+     * @param seg the segment number
+     */
+    private void darken(int seg) {
+        for (int pos = puzzle.getSegmentFrom(seg); pos < puzzle.getSegmentTo(seg); pos++) {
+            int cell = puzzle.getSegmentCell(seg, pos);
+            if (state[cell] == OPEN) {
+                decide(cell, DARK);
+            }
+        }
+    }
+
+    /**
+     * Pop the last decided cell off the trail and open it again.
+     */
+    private void retract() {
+        int cell = trail[--trailSize];
+        boolean laser = state[cell] == LASER;
+        if (openKey != null) {
+            rehash(cell, laser);
+        }
+        recount(cell, laser, -1);
+        int rowSeg = puzzle.getRowSegment(cell);
+        int colSeg = puzzle.getColSegment(cell);
+        segOpen[rowSeg]++;
+        segOpen[colSeg]++;
+        if (laser) {
+            segLasers[rowSeg]--;
+            segLasers[colSeg]--;
+        }
+        state[cell] = OPEN;
+        recount(cell, laser, 1);
+        emptiedSize = 0;
+        if (openKey != null) {
+            rehash(cell, laser);
+        }
+    }
+
+    /**
+     * Take out or put back the cells a change to a cell can stop from
+     * taking a laser, in the counts of their segments.  Called with -1
+     * before the change and with 1 after it, it moves the counts from the
+     * old state to the new one.  A segment whose count drops to zero is
+     * remembered, to be looked at once the change is done.
+     * @param cell the cell number
+     * @param laser true if the change puts in or takes out a laser, which
+     *              also lights or darkens its segments
+     * @param delta -1 to take the cells out, 1 to put them back
+     */
+    private void recount(int cell, boolean laser, int delta) {
+        count(cell, delta);
+        if (!laser) {
+            return;
+        }
+        int rowSeg = puzzle.getRowSegment(cell);
+        int colSeg = puzzle.getColSegment(cell);
+        for (int pos = puzzle.getSegmentFrom(rowSeg); pos < puzzle.getSegmentTo(rowSeg); pos++) {
+            int other = puzzle.getSegmentCell(rowSeg, pos);
+            if (other != cell) {
+                count(other, delta);
+            }
+        }
+        for (int pos = puzzle.getSegmentFrom(colSeg); pos < puzzle.getSegmentTo(colSeg); pos++) {
+            int other = puzzle.getSegmentCell(colSeg, pos);
+            if (other != cell) {
+                count(other, delta);
+            }
+        }
+    }
+
+    /**
+     * Take out or put back one cell in the counts of its segments, if it
+     * can take a laser.
+     * @param cell the cell number
+     * @param delta -1 to take it out, 1 to put it back
+     */
+    private void count(int cell, int delta) {
+        if (!canHoldLaser(cell)) {
+            return;
+        }
+        int rowSeg = puzzle.getRowSegment(cell);
+        int colSeg = puzzle.getColSegment(cell);
+        segFree[rowSeg] += delta;
+        segFree[colSeg] += delta;
+        if (segFree[rowSeg] == 0) {
+            emptied[emptiedSize++] = rowSeg;
+        }
+        if (segFree[colSeg] == 0) {
+            emptied[emptiedSize++] = colSeg;
+        }
+    }
+
+    /**
+     * Look for a cell that can no longer be lit in a segment that has no
+     * laser and no cell left to take one.  Such a cell is not lit, and
+     * its other segment has no cell left either.
+     * @param seg the segment number
+     * @return true if there is one
+     */
+    private boolean hasUncoverable(int seg) {
+        boolean row = puzzle.isRowSegment(seg);
+        for (int pos = puzzle.getSegmentFrom(seg); pos < puzzle.getSegmentTo(seg); pos++) {
+            int cell = puzzle.getSegmentCell(seg, pos);
+            int other = row ? puzzle.getColSegment(cell) : puzzle.getRowSegment(cell);
+            if (segLasers[other] == 0 && segFree[other] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Toggle the keys of everything a change to a cell can touch in the
+     * hash.  Called once before and once after the change, it takes out
+     * the old keys and puts in the new ones.
+     * @param cell the cell number
+     * @param laser true if the change puts in or takes out a laser, which
+     *              also lights or darkens its segments and counts for the
+     *              pillars next to it
+     */
+    private void rehash(int cell, boolean laser) {
+        if (!laser) {
+            hash ^= cellKey(cell);
+            return;
+        }
+        int rowSeg = puzzle.getRowSegment(cell);
+        int colSeg = puzzle.getColSegment(cell);
+        for (int pos = puzzle.getSegmentFrom(rowSeg); pos < puzzle.getSegmentTo(rowSeg); pos++) {
+            hash ^= cellKey(puzzle.getSegmentCell(rowSeg, pos));
+        }
+        for (int pos = puzzle.getSegmentFrom(colSeg); pos < puzzle.getSegmentTo(colSeg); pos++) {
+            int other = puzzle.getSegmentCell(colSeg, pos);
+            if (other != cell) {
+                hash ^= cellKey(other);
+            }
+        }
+        int n = puzzle.getNeighbors(cell, hashAround);
+        for (int i = 0; i < n; i++) {
+            if (state[hashAround[i]] == PILLAR) {
+                hash ^= cellKey(hashAround[i]);
+            }
+        }
+    }
+
+    /**
+     * The key a cell adds to the hash: a dark cell adds one key if it can
+     * still take a laser and another if not, a numbered pillar adds one
+     * key per number of lasers next to it, and anything else nothing.
+     * @param cell the cell number
+     * @return the key
+     */
+    private long cellKey(int cell) {
+        if (state[cell] == PILLAR) {
+            return puzzle.getPillar(cell) < 0 ? 0 : pillarKey[5 * cell + countLasers(cell)];
+        }
+        if (isLit(cell)) {
+            return 0;
+        }
+        return state[cell] == OPEN ? openKey[cell] : darkKey[cell];
+    }
+
+    /**
+     * Is the cell lit by a laser in its row segment or its column segment?
+     * @param cell the cell number
+     * @return true if a laser shines on the cell
+     */
+    public boolean isLit(int cell) {
+        return segLasers[puzzle.getRowSegment(cell)] > 0
+                || segLasers[puzzle.getColSegment(cell)] > 0;
+    }
+
+    /**
+     * Can a laser still go in this cell?
+     * @param cell the cell number
+     * @return true if the cell is undecided and no laser shines on it
+     */
+    boolean canHoldLaser(int cell) {
+        return state[cell] == OPEN && !isLit(cell);
+    }
+
+    /**
+     * Find the dark cell with the fewest cells left that could light it.
+     * Every undecided cell is counted as one that could, which holds
+     * because a laser in this order always darkens its segments at once.
+     * @return the cell number, or -1 if every cell is lit
+     */
+    private int mostConstrained() {
+        int best = -1;
+        int fewest = Integer.MAX_VALUE;
+        for (int cell = 0; cell < state.length; cell++) {
+            if (state[cell] == PILLAR || isLit(cell)) {
+                continue;
+            }
+            int ways = countWays(cell);
+            if (ways < fewest) {
+                best = cell;
+                fewest = ways;
+                if (ways <= 1) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Count the cells that could light a cell: the undecided cells of its
+     * row and column segments, itself included.
+     * @param cell the cell number
+     * @return the number of cells that could take a laser
+     */
+    private int countWays(int cell) {
+        return segOpen[puzzle.getRowSegment(cell)] + segOpen[puzzle.getColSegment(cell)]
+                - (state[cell] == OPEN ? 1 : 0);
+    }
+
+    /**
+     * Branch on the cells that could light a target cell: the first
+     * skipped cells stay dark and the next one gets the laser.
+     * @param target the cell that has to be lit
+     * @param skip how many of the cells that could light it stay dark
+     */
+    private void lightUp(int target, int skip) {
+        int rowSeg = puzzle.getRowSegment(target);
+        int colSeg = puzzle.getColSegment(target);
+        for (int pos = puzzle.getSegmentFrom(rowSeg); pos < puzzle.getSegmentTo(rowSeg); pos++) {
+            int cell = puzzle.getSegmentCell(rowSeg, pos);
+            if (state[cell] == OPEN) {
+                if (skip-- == 0) {
+                    placeLaser(cell);
+                    return;
+                }
+                decide(cell, DARK);
+            }
+        }
+        for (int pos = puzzle.getSegmentFrom(colSeg); pos < puzzle.getSegmentTo(colSeg); pos++) {
+            int cell = puzzle.getSegmentCell(colSeg, pos);
+            if (cell != target && state[cell] == OPEN) {
+                if (skip-- == 0) {
+                    placeLaser(cell);
+                    return;
+                }
+                decide(cell, DARK);
+            }
+        }
+    }
+
+    @Override
+    public int getBranchCount() {
+        if (failed) {
+            return 0;
+        }
+        if (order == CellOrder.MOST_CONSTRAINED) {
+            int target = mostConstrained();
+            if (target < 0) {
+                return 0;
+            }
+            targets[depth] = target;
+            return countWays(target);
+        }
+        if (depth == state.length) {
+            return 0;
+        }
+        return canHoldLaser(depth) ? 2 : 1;
+    }
+
+    @Override
+    public void apply(int branch) {
+        int cell = depth;
+        int mark = trailSize;
+        marks[depth++] = mark;
+        if (order == CellOrder.MOST_CONSTRAINED) {
+            lightUp(targets[cell], branch);
+        } else if (state[cell] == OPEN) {
+            if (branch != 0 || isLit(cell)) {
+                decide(cell, DARK);
+            } else if (propagator != null) {
+                placeLaser(cell);
+            } else {
+                decide(cell, LASER);
+            }
+        }
+        failed = propagator != null && !propagator.propagate(mark);
+    }
+
+    @Override
+    public void undo() {
+        int mark = marks[--depth];
+        while (trailSize > mark) {
+            retract();
+        }
+        failed = false;
+        uncovered = false;
+    }
+
+    @Override
+    public boolean isValid() {
+        if (failed || uncovered) {
+            reason = failed ? PruneReason.PROPAGATION : PruneReason.UNCOVERED;
+            return false;
+        }
+        reason = PruneReason.PILLAR;
+        if (order == CellOrder.MOST_CONSTRAINED) {
+            for (int i = marks[depth - 1]; i < trailSize && forwardCheck; i++) {
+                if (!checkAround(trail[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        int cell = depth - 1;
+        if (state[cell] == LASER) {
+            if (segLasers[puzzle.getRowSegment(cell)] > 1
+                    || segLasers[puzzle.getColSegment(cell)] > 1) {
+                reason = PruneReason.LASER_CONFLICT;
+                return false;
+            }
+            if (forwardCheck && !checkBeams(cell)) {
+                return false;
+            }
+        }
+        if (forwardCheck && !checkAround(cell)) {
+            return false;
+        }
+        if (depth == state.length && !verify()) {
+            reason = PruneReason.INCOMPLETE;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public PruneReason getPruneReason() {
+        return reason;
+    }
+
+    @Override
+    public boolean isGoal() {
+        if (order == CellOrder.MOST_CONSTRAINED) {
+            return verify();
+        }
+        return depth == state.length && verify();
+    }
+
+    /**
+     * Forward check helper function.  A numbered pillar is already lost
+     * if it has more lasers than its number, or if the lasers it has plus
+     * the neighbours that could still take one fall short of its number.
+     * @param cell the cell number of the pillar
+     * @return false if the pillar can no longer be satisfied
+     */
+    public boolean checkPillar(int cell) {
+        int value = puzzle.getPillar(cell);
+        if (value < 0) {
+            return true;
+        }
+        int cols = puzzle.getCols();
+        int row = cell / cols;
+        int col = cell % cols;
+        int numLasers = 0;
+        int numOpen = 0;
+        if (row > 0) {
+            numLasers += state[cell - cols] == LASER ? 1 : 0;
+            numOpen += canHoldLaser(cell - cols) ? 1 : 0;
+        }
+        if (row < puzzle.getRows() - 1) {
+            numLasers += state[cell + cols] == LASER ? 1 : 0;
+            numOpen += canHoldLaser(cell + cols) ? 1 : 0;
+        }
+        if (col > 0) {
+            numLasers += state[cell - 1] == LASER ? 1 : 0;
+            numOpen += canHoldLaser(cell - 1) ? 1 : 0;
+        }
+        if (col < cols - 1) {
+            numLasers += state[cell + 1] == LASER ? 1 : 0;
+            numOpen += canHoldLaser(cell + 1) ? 1 : 0;
+        }
+        return numLasers <= value && numLasers + numOpen >= value;
+    }
+
+    /**
+     * Forward check the pillars next to a cell.
+     * @param cell the cell number
+     * @return false if one of them can no longer be satisfied
+     */
+    private boolean checkAround(int cell) {
+        int n = puzzle.getNeighbors(cell, around);
+        for (int i = 0; i < n; i++) {
+            if (state[around[i]] == PILLAR && !checkPillar(around[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Forward check the pillars next to the segments of a new laser,
+     * since its beams take away cells those pillars were counting on.
+     * @param cell the cell number of the laser
+     * @return false if one of them can no longer be satisfied
+     */
+    private boolean checkBeams(int cell) {
+        int rowSeg = puzzle.getRowSegment(cell);
+        int colSeg = puzzle.getColSegment(cell);
+        for (int pos = puzzle.getSegmentFrom(rowSeg); pos < puzzle.getSegmentTo(rowSeg); pos++) {
+            int lit = puzzle.getSegmentCell(rowSeg, pos);
+            if (lit != cell && !checkAround(lit)) {
+                return false;
+            }
+        }
+        for (int pos = puzzle.getSegmentFrom(colSeg); pos < puzzle.getSegmentTo(colSeg); pos++) {
+            int lit = puzzle.getSegmentCell(colSeg, pos);
+            if (lit != cell && !checkAround(lit)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Verify safe correctness.  Every segment holds at most one laser,
+     * every cell that is not a pillar is lit, and every numbered pillar
+     * has its number of lasers.
+     * @return boolean representing the validity of the safe configuration
+     */
+    public boolean verify() {
+        for (int seg = 0; seg < segLasers.length; seg++) {
+            if (segLasers[seg] > 1) {
+                return false;
+            }
+        }
+        for (int cell = 0; cell < state.length; cell++) {
+            if (state[cell] == PILLAR) {
+                if (!verifyPillar(cell)) {
+                    return false;
+                }
+            } else if (!isLit(cell)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Verify pillar helper function.
+     * @param cell the cell number of the pillar
+     * @return true if the pillar has the right number of lasers next to it
+     */
+    public boolean verifyPillar(int cell) {
+        int value = puzzle.getPillar(cell);
+        return value == SafePuzzle.ANY || countLasers(cell) == value;
+    }
+
+    /**
+     * Count the lasers next to a cell.
+     * @param cell the cell number
+     * @return the number of lasers
+     */
+    private int countLasers(int cell) {
+        int cols = puzzle.getCols();
+        int row = cell / cols;
+        int col = cell % cols;
+        int numLasers = 0;
+        if (row > 0 && state[cell - cols] == LASER) {
+            numLasers++;
+        }
+        if (row < puzzle.getRows() - 1 && state[cell + cols] == LASER) {
+            numLasers++;
+        }
+        if (col > 0 && state[cell - 1] == LASER) {
+            numLasers++;
+        }
+        if (col < cols - 1 && state[cell + 1] == LASER) {
+            numLasers++;
+        }
+        return numLasers;
+    }
+
+    /**
+     * Getter function. return the state of a cell.
+     * @param cell the cell number
+     * @return OPEN, LASER, DARK or PILLAR
+     */
+    public byte getState(int cell) {
+        return state[cell];
+    }
+
+    /**
+     * Getter function. return how many lasers a segment holds.
+     * @param seg the segment number
+     * @return the number of lasers
+     */
+    int getSegmentLasers(int seg) {
+        return segLasers[seg];
+    }
+
+    /**
+     * Getter function. return how many cells of a segment are undecided.
+     * @param seg the segment number
+     * @return the number of undecided cells
+     */
+    int getSegmentOpen(int seg) {
+        return segOpen[seg];
+    }
+
+    /**
+     * Getter function. return how many cells are on the trail.
+     * @return the size of the trail
+     */
+    int getTrailSize() {
+        return trailSize;
+    }
+
+    /**
+     * Getter function. return a cell on the trail.
+     * @param i the position on the trail
+     * @return the cell number
+     */
+    int getTrailCell(int i) {
+        return trail[i];
+    }
+
+    /**
+     * Getter function. return how many steps deep the search is.
+     * @return the number of steps applied and not undone
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Getter function. return the layout of the safe.
+     * @return the layout of the safe
+     */
+    public SafePuzzle getPuzzle() {
+        return puzzle;
+    }
+
+    /**
+     * Getter function. return which cells hold a laser.
+     * @return one entry per cell, true where there is a laser
+     */
+    public boolean[] getLasers() {
+        boolean[] lasers = new boolean[state.length];
+        for (int cell = 0; cell < state.length; cell++) {
+            lasers[cell] = state[cell] == LASER;
+        }
+        return lasers;
+    }
+
+    @Override
+    public String[][] getGrid() {
+        return puzzle.toGrid(getLasers());
+    }
+
+    @Override
+    public String toString() {
+        return SafePuzzle.format(getGrid());
+    }
+}
@@ -31,6 +31,11 @@ public class SafeConfig implements Configuration {
     private Integer[] size;
     private int currRow;
     private int currCol;
+    private boolean forwardCheck;
+    private boolean coverCheck;
+    private int[] cover;
+    private boolean uncovered;
+    private PruneReason reason;
 
 
     /**
@@ -54,12 +59,11 @@ public class SafeConfig implements Configuration {
         file.close();
         this.currRow = 0;
         this.currCol = -1;
+        this.forwardCheck = true;
+        this.coverCheck = true;
     }
 
-    /**
-     * Getter function. return the safe grid.
-     * @return the safe grid
-     */
+    @Override
     public String[][] getGrid(){
         return this.grid;
     }
@@ -80,6 +84,26 @@ public class SafeConfig implements Configuration {
         return currCol;
     }
 
+    /**
+     * Setter function. turn the pillar checks on partial configurations
+     * on or off.  They are on by default.
+     * @param forwardCheck true to check the pillars during the search,
+     *                     false to check them only at the last cell
+     */
+    public void setForwardChecking(boolean forwardCheck) {
+        this.forwardCheck = forwardCheck;
+    }
+
+    /**
+     * Setter function. turn the check for slots that can no longer be lit
+     * on or off.  It is on by default.
+     * @param coverCheck true to end a branch as soon as a slot can no
+     *                   longer be lit, false to find out at the last cell
+     */
+    public void setCoverageChecking(boolean coverCheck) {
+        this.coverCheck = coverCheck;
+    }
+
     /**
      * Setter function. set the safe grid to a given grid.
      * @param grid the given grid.
@@ -98,17 +122,24 @@ public class SafeConfig implements Configuration {
         this.size = new Integer[2];
 
         for(int row = 0; row < other.size[0]; row++){
-            System.arraycopy(other.grid[row], 0, this.grid[row], 0, other.size[0]);
+            System.arraycopy(other.grid[row], 0, this.grid[row], 0, other.size[1]);
         }
         this.size[0] = other.size[0];
         this.size[1] = other.size[1];
         this.currRow = other.currRow;
         this.currCol = other.currCol;
+        this.forwardCheck = other.forwardCheck;
+        this.coverCheck = other.coverCheck;
+        this.cover = other.cover == null ? null : other.cover.clone();
+        this.uncovered = other.uncovered;
     }
 
     @Override
     public Collection<Configuration> getSuccessors() {
         Collection<Configuration> config = new ArrayList<>();
+        if (this.coverCheck && this.cover == null) {
+            countCover();
+        }
         this.currCol += 1;
         int col = this.currCol;
         if(col == this.size[1]){
@@ -123,6 +154,10 @@ public class SafeConfig implements Configuration {
             child1.add(row, col);
             SafeConfig child2 = new SafeConfig(this);
             child2.grid[row][col] = String.valueOf(EMPTY);
+            if (this.coverCheck) {
+                child1.coverLaser(row, col);
+                child2.release(row, col);
+            }
             config.add(child1);
             config.add(child2);
             return config;
@@ -135,18 +170,38 @@ public class SafeConfig implements Configuration {
 
     @Override
     public boolean isValid() {
+        if(this.coverCheck && this.uncovered){
+            this.reason = PruneReason.UNCOVERED;
+            return false;
+        }
         if(this.grid[this.currRow][this.currCol].equals(String.valueOf(LASER))){
             if(!verifyLaser(this.currRow, this.currCol)){
+                this.reason = PruneReason.LASER_CONFLICT;
+                return false;
+            }
+            if(this.forwardCheck && !checkBeams(this.currRow, this.currCol)){
+                this.reason = PruneReason.PILLAR;
                 return false;
             }
         }
-        if(this.currRow == this.size[0] - 1 && this.currCol == this.size[1] - 1){
-            return this.verify();
+        if(this.forwardCheck && !checkAround(this.currRow, this.currCol)){
+            this.reason = PruneReason.PILLAR;
+            return false;
+        }
+        if(this.currRow == this.size[0] - 1 && this.currCol == this.size[1] - 1
+                && !this.verify()){
+            this.reason = PruneReason.INCOMPLETE;
+            return false;
         }
 
         return true;
     }
 
+    @Override
+    public PruneReason getPruneReason() {
+        return this.reason;
+    }
+
     @Override
     public boolean isGoal() {
         if(!(this.currRow == this.size[0] - 1)  || !(this.currCol == this.size[1] - 1)){
@@ -360,6 +415,216 @@ public class SafeConfig implements Configuration {
     }
 
 
+    /**
+     * Forward check helper function.  A numbered pillar is already lost
+     * if it has more lasers than its number, or if the lasers it has plus
+     * the neighbours that could still take one fall short of its number.
+     * A neighbour can still take a laser if the search has not reached it
+     * yet and no beam shines on it.
+     * @param r the row number of the pillar
+     * @param c the column number of the pillar
+     * @return false if the pillar can no longer be satisfied
+     */
+    public boolean checkPillar(int r, int c){
+        if(this.grid[r][c].equals(EMPTY) || this.grid[r][c].equals(LASER)
+                || this.grid[r][c].equals(BEAM) || this.grid[r][c].equals(ANYNUM)){
+            return true;
+        }
+        int value = Integer.parseInt(this.grid[r][c]);
+        int numLasers = 0;
+        int numOpen = 0;
+        int[][] around = {{r - 1, c}, {r + 1, c}, {r, c - 1}, {r, c + 1}};
+        for(int[] slot : around){
+            int row = slot[0];
+            int col = slot[1];
+            if(row < 0 || row >= this.size[0] || col < 0 || col >= this.size[1]){
+                continue;
+            }
+            if(this.grid[row][col].equals(LASER)){
+                numLasers++;
+            } else if(this.grid[row][col].equals(EMPTY) && (row > this.currRow
+                    || (row == this.currRow && col > this.currCol))){
+                numOpen++;
+            }
+        }
+        return numLasers <= value && numLasers + numOpen >= value;
+    }
+
+    /**
+     * Forward check the pillars next to a slot.
+     * @param r the row number of the slot
+     * @param c the column number of the slot
+     * @return false if one of them can no longer be satisfied
+     */
+    private boolean checkAround(int r, int c){
+        return (r == 0 || checkPillar(r - 1, c))
+                && (r == this.size[0] - 1 || checkPillar(r + 1, c))
+                && (c == 0 || checkPillar(r, c - 1))
+                && (c == this.size[1] - 1 || checkPillar(r, c + 1));
+    }
+
+    /**
+     * Forward check the pillars next to the beams of a new laser, since
+     * the beams take away slots those pillars were counting on.
+     * @param r integer representing the lasers row position
+     * @param c integer representing the lasers column position
+     * @return false if one of them can no longer be satisfied
+     */
+    private boolean checkBeams(int r, int c){
+        // North
+        for(int row = r - 1; row >= 0 && this.grid[row][c].equals(BEAM); row--){
+            if(!checkAround(row, c)){
+                return false;
+            }
+        }
+
+        // South
+        for(int row = r + 1; row < this.size[0] && this.grid[row][c].equals(BEAM); row++){
+            if(!checkAround(row, c)){
+                return false;
+            }
+        }
+
+        // East
+        for(int col = c + 1; col < this.size[1] && this.grid[r][col].equals(BEAM); col++){
+            if(!checkAround(r, col)){
+                return false;
+            }
+        }
+
+        // West
+        for(int col = c - 1; col >= 0 && this.grid[r][col].equals(BEAM); col--){
+            if(!checkAround(r, col)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Count, for every slot, the slots in its row and column that could
+     * still take a laser: the empty slots the search has not reached yet,
+     * up to the first pillar each way.  The counts are kept up to date
+     * from here on, by release, so a slot that can no longer be lit is
+     * noticed the moment its count drops to zero.
+     */
+    private void countCover(){
+        this.cover = new int[this.size[0] * this.size[1]];
+        for(int r = 0; r < this.size[0]; r++){
+            for(int c = 0; c < this.size[1]; c++){
+                if(isCandidate(r, c)){
+                    forEachInSight(r, c, 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Can the search still put a laser in a slot?
+     * @param r the row number of the slot
+     * @param c the column number of the slot
+     * @return true if the slot is empty and the search has not reached it
+     */
+    private boolean isCandidate(int r, int c){
+        return this.grid[r][c].equals(EMPTY)
+                && (r > this.currRow || (r == this.currRow && c > this.currCol));
+    }
+
+    /**
+     * Take a slot that could have taken a laser out of the counts of the
+     * slots it could have lit.  If one of them is not lit and has no
+     * slot left that could light it, the configuration is lost.
+     * @param r the row number of the slot
+     * @param c the column number of the slot
+     */
+    private void release(int r, int c){
+        forEachInSight(r, c, -1);
+    }
+
+    /**
+     * Update the counts for a new laser: its own slot, and every slot
+     * ahead of the search that its beams now light, can no longer take
+     * one.
+     * @param r integer representing the lasers row position
+     * @param c integer representing the lasers column position
+     */
+    private void coverLaser(int r, int c){
+        release(r, c);
+        for(int row = r - 1; row >= 0 && this.grid[row][c].equals(BEAM); row--){
+            releaseBeam(row, c);
+        }
+        for(int row = r + 1; row < this.size[0] && this.grid[row][c].equals(BEAM); row++){
+            releaseBeam(row, c);
+        }
+        for(int col = c - 1; col >= 0 && this.grid[r][col].equals(BEAM); col--){
+            releaseBeam(r, col);
+        }
+        for(int col = c + 1; col < this.size[1] && this.grid[r][col].equals(BEAM); col++){
+            releaseBeam(r, col);
+        }
+    }
+
+    /**
+     * Release a slot a new beam shines on, if the search has not reached
+     * it yet; the slots behind the search were released when it passed.
+     * @param r the row number of the slot
+     * @param c the column number of the slot
+     */
+    private void releaseBeam(int r, int c){
+        if(r > this.currRow || (r == this.currRow && c > this.currCol)){
+            release(r, c);
+        }
+    }
+
+    /**
+     * Change the count of a slot and of every slot in its row and column
+     * up to the first pillar each way.  A count that drops to zero on a
+     * slot that is not lit marks the configuration as lost.
+     * @param r the row number of the slot
+     * @param c the column number of the slot
+     * @param delta 1 to add the slot to the counts, -1 to take it out
+     */
+    private void forEachInSight(int r, int c, int delta){
+        sight(r, c, delta);
+        for(int row = r - 1; row >= 0 && !isPillar(row, c); row--){
+            sight(row, c, delta);
+        }
+        for(int row = r + 1; row < this.size[0] && !isPillar(row, c); row++){
+            sight(row, c, delta);
+        }
+        for(int col = c - 1; col >= 0 && !isPillar(r, col); col--){
+            sight(r, col, delta);
+        }
+        for(int col = c + 1; col < this.size[1] && !isPillar(r, col); col++){
+            sight(r, col, delta);
+        }
+    }
+
+    /**
+     * Change the count of one slot.
+     * @param r the row number of the slot
+     * @param c the column number of the slot
+     * @param delta the change
+     */
+    private void sight(int r, int c, int delta){
+        int slot = r * this.size[1] + c;
+        this.cover[slot] += delta;
+        if(this.cover[slot] == 0 && this.grid[r][c].equals(EMPTY)){
+            this.uncovered = true;
+        }
+    }
+
+    /**
+     * Is a slot a pillar?
+     * @param r the row number of the slot
+     * @param c the column number of the slot
+     * @return true if the slot is not empty, a laser or a beam
+     */
+    private boolean isPillar(int r, int c){
+        return !this.grid[r][c].equals(EMPTY) && !this.grid[r][c].equals(LASER)
+                && !this.grid[r][c].equals(BEAM);
+    }
+
     /**
      * Add laser to slot(r,c)
      * @param r the row number of the slot
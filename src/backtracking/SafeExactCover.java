@@ -0,0 +1,379 @@
+package backtracking;
+
+import java.io.FileNotFoundException;
+import java.util.Optional;
+
+/**
+ * A safe solver built on dancing links, after Knuth's Algorithm X.  The
+ * rules of a safe are written as a cover problem:
+ *
+ * - every empty cell is an item that has to be covered at least once.
+ * - every numbered pillar is an item that has to be covered exactly its
+ *   number of times.
+ * - every row and column segment is an item that may be covered at most
+ *   once.
+ *
+ * Every cell that could hold a laser is an option.  It covers the cells
+ * of its row and column segment, the two segments, and the numbered
+ * pillars next to it.  A set of options that meets all the bounds is a
+ * solution of the safe.
+ *
+ * Items and options are kept in circular lists that are linked up and
+ * down through a few int arrays.  Choosing an option unlinks it and, for
+ * every item it fills, all the options that item has no room left for;
+ * undoing the choice links them back in the reverse order, which is all
+ * the bookkeeping the search needs.  At every step the search branches
+ * on the item with the fewest options left to meet its bound, and an
+ * item that can no longer meet it ends the branch.  The options tried
+ * before on the same item are left out of the later branches, so no
+ * solution is found twice.
+ */
+public class SafeExactCover {
+    private final SafePuzzle puzzle;
+
+    // the bounds of the items; items 0 .. cells - 1 belong to the cells,
+    // the segments follow
+    private final int[] lo;
+    private final int[] hi;
+    private final int[] count;
+    private final int[] len;
+
+    // the items whose lower bound is not met yet, linked in a list that
+    // starts and ends at the root
+    private final int[] prev;
+    private final int[] next;
+    private final int root;
+
+    // the nodes; nodes 0 .. items - 1 are the heads of the item lists and
+    // every option's nodes follow each other
+    private final int[] up;
+    private final int[] down;
+    private final int[] item;
+    private final int[] option;
+
+    // the options
+    private final int[] optCell;
+    private final int[] optFirst;
+    private final int[] optEnd;
+
+    private final int[] excluded;
+    private int excludedSize;
+    private final int[] chosen;
+    private int chosenSize;
+    private boolean[] solution;
+    private long nodes;
+
+    /**
+     * constructor. read a file and set up the cover problem of its safe.
+     * @param filename file name
+     * @throws FileNotFoundException if file does not exist
+     */
+    public SafeExactCover(String filename) throws FileNotFoundException {
+        this(new SafePuzzle(filename));
+    }
+
+    /**
+     * constructor. set up the cover problem of a safe.
+     * @param puzzle the layout of the safe
+     */
+    public SafeExactCover(SafePuzzle puzzle) {
+        this.puzzle = puzzle;
+        int cells = puzzle.getCellCount();
+        int items = cells + puzzle.getSegmentCount();
+        this.lo = new int[items];
+        this.hi = new int[items];
+        this.count = new int[items];
+        this.len = new int[items];
+        for (int cell = 0; cell < cells; cell++) {
+            int value = puzzle.getPillar(cell);
+            if (value == SafePuzzle.NONE) {
+                this.lo[cell] = 1;
+                this.hi[cell] = Integer.MAX_VALUE;
+            } else if (value > 0) {
+                this.lo[cell] = value;
+                this.hi[cell] = value;
+            }
+        }
+        for (int seg = cells; seg < items; seg++) {
+            this.hi[seg] = 1;
+        }
+
+        // a cell next to a 0 pillar can never hold a laser
+        int[] around = new int[4];
+        boolean[] candidate = new boolean[cells];
+        int options = 0;
+        int size = items;
+        for (int cell = 0; cell < cells; cell++) {
+            if (puzzle.isPillar(cell) || nextToZero(cell, around)) {
+                continue;
+            }
+            candidate[cell] = true;
+            options++;
+            size += optionSize(cell, around);
+        }
+
+        this.up = new int[size];
+        this.down = new int[size];
+        this.item = new int[size];
+        this.option = new int[size];
+        for (int i = 0; i < items; i++) {
+            this.up[i] = i;
+            this.down[i] = i;
+            this.item[i] = i;
+            this.option[i] = -1;
+        }
+        this.optCell = new int[options];
+        this.optFirst = new int[options];
+        this.optEnd = new int[options];
+        int node = items;
+        int opt = 0;
+        for (int cell = 0; cell < cells; cell++) {
+            if (!candidate[cell]) {
+                continue;
+            }
+            this.optCell[opt] = cell;
+            this.optFirst[opt] = node;
+            int rowSeg = puzzle.getRowSegment(cell);
+            int colSeg = puzzle.getColSegment(cell);
+            node = addNode(node, cells + rowSeg, opt);
+            node = addNode(node, cells + colSeg, opt);
+            int n = puzzle.getNeighbors(cell, around);
+            for (int i = 0; i < n; i++) {
+                if (puzzle.getPillar(around[i]) > 0) {
+                    node = addNode(node, around[i], opt);
+                }
+            }
+            for (int pos = puzzle.getSegmentFrom(rowSeg); pos < puzzle.getSegmentTo(rowSeg); pos++) {
+                node = addNode(node, puzzle.getSegmentCell(rowSeg, pos), opt);
+            }
+            for (int pos = puzzle.getSegmentFrom(colSeg); pos < puzzle.getSegmentTo(colSeg); pos++) {
+                int other = puzzle.getSegmentCell(colSeg, pos);
+                if (other != cell) {
+                    node = addNode(node, other, opt);
+                }
+            }
+            this.optEnd[opt] = node;
+            opt++;
+        }
+
+        this.root = items;
+        this.prev = new int[items + 1];
+        this.next = new int[items + 1];
+        int last = this.root;
+        for (int i = 0; i < cells; i++) {
+            if (this.lo[i] > 0) {
+                this.next[last] = i;
+                this.prev[i] = last;
+                last = i;
+            }
+        }
+        this.next[last] = this.root;
+        this.prev[this.root] = last;
+
+        this.excluded = new int[options];
+        this.excludedSize = 0;
+        this.chosen = new int[options];
+        this.chosenSize = 0;
+        this.nodes = 0;
+    }
+
+    /**
+     * Getter function. return the layout of the safe.
+     * @return the puzzle being solved
+     */
+    public SafePuzzle getPuzzle() {
+        return puzzle;
+    }
+
+    /**
+     * Getter function. return how many steps the searches have taken.
+     * @return the number of nodes expanded
+     */
+    public long getNodeCount() {
+        return nodes;
+    }
+
+    /**
+     * Search for a solution of the safe.
+     * @return the solved grid, with its beams, or empty if there is no
+     * solution
+     */
+    public Optional<String[][]> solve() {
+        this.solution = null;
+        search();
+        return this.solution == null ? Optional.empty() : Optional.of(puzzle.toGrid(this.solution));
+    }
+
+    /**
+     * Search below the current choice of options.  The links are back the
+     * way they were when this returns, whether a solution was found or not.
+     * @return true if a solution was found
+     */
+    private boolean search() {
+        nodes++;
+        int best = root;
+        int bestScore = Integer.MAX_VALUE;
+        for (int i = next[root]; i != root; i = next[i]) {
+            // how many options are left for the item, beyond the ones it
+            // needs at the least
+            int score = len[i] - (lo[i] - count[i]) + 1;
+            if (score <= 0) {
+                return false;
+            }
+            if (score < bestScore) {
+                best = i;
+                bestScore = score;
+            }
+        }
+        if (best == root) {
+            this.solution = new boolean[puzzle.getCellCount()];
+            for (int k = 0; k < chosenSize; k++) {
+                this.solution[optCell[chosen[k]]] = true;
+            }
+            return true;
+        }
+
+        int base = excludedSize;
+        boolean found = false;
+        for (int node = down[best]; node != best && !found; node = down[node]) {
+            int opt = option[node];
+            choose(opt);
+            found = search();
+            unchoose(opt);
+            hide(opt, -1);
+            excluded[excludedSize++] = opt;
+        }
+        while (excludedSize > base) {
+            unhide(excluded[--excludedSize], -1);
+        }
+        return found;
+    }
+
+    /**
+     * Take an option into the solution.
+     * @param opt the option number
+     */
+    private void choose(int opt) {
+        chosen[chosenSize++] = opt;
+        hide(opt, -1);
+        for (int node = optFirst[opt]; node < optEnd[opt]; node++) {
+            int i = item[node];
+            count[i]++;
+            if (lo[i] > 0 && count[i] == lo[i]) {
+                next[prev[i]] = next[i];
+                prev[next[i]] = prev[i];
+            }
+            if (count[i] == hi[i]) {
+                for (int other = down[i]; other != i; other = down[other]) {
+                    hide(option[other], i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Take the option that was chosen last back out of the solution.
+     * @param opt the option number
+     */
+    private void unchoose(int opt) {
+        for (int node = optEnd[opt] - 1; node >= optFirst[opt]; node--) {
+            int i = item[node];
+            if (count[i] == hi[i]) {
+                for (int other = up[i]; other != i; other = up[other]) {
+                    unhide(option[other], i);
+                }
+            }
+            if (lo[i] > 0 && count[i] == lo[i]) {
+                next[prev[i]] = i;
+                prev[next[i]] = i;
+            }
+            count[i]--;
+        }
+        unhide(opt, -1);
+        chosenSize--;
+    }
+
+    /**
+     * Unlink the nodes of an option from the lists of their items.
+     * @param opt the option number
+     * @param keep an item whose list keeps the option, or -1 for none
+     */
+    private void hide(int opt, int keep) {
+        for (int node = optFirst[opt]; node < optEnd[opt]; node++) {
+            if (item[node] != keep) {
+                down[up[node]] = down[node];
+                up[down[node]] = up[node];
+                len[item[node]]--;
+            }
+        }
+    }
+
+    /**
+     * Link the nodes of an option back in, in the reverse order of hide.
+     * @param opt the option number
+     * @param keep the item that hide left alone, or -1 for none
+     */
+    private void unhide(int opt, int keep) {
+        for (int node = optEnd[opt] - 1; node >= optFirst[opt]; node--) {
+            if (item[node] != keep) {
+                down[up[node]] = node;
+                up[down[node]] = node;
+                len[item[node]]++;
+            }
+        }
+    }
+
+    /**
+     * Add a node at the bottom of an item's list.
+     * @param node the node number
+     * @param i the item number
+     * @param opt the option the node belongs to
+     * @return the number of the next node
+     */
+    private int addNode(int node, int i, int opt) {
+        item[node] = i;
+        option[node] = opt;
+        up[node] = up[i];
+        down[node] = i;
+        down[up[i]] = node;
+        up[i] = node;
+        len[i]++;
+        return node + 1;
+    }
+
+    /**
+     * Is a cell next to a 0 pillar?
+     * @param cell the cell number
+     * @param around room for the neighbours of the cell
+     * @return true if one of its neighbours is a 0 pillar
+     */
+    private boolean nextToZero(int cell, int[] around) {
+        int n = puzzle.getNeighbors(cell, around);
+        for (int i = 0; i < n; i++) {
+            if (puzzle.getPillar(around[i]) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Count the nodes of the option of a cell.
+     * @param cell the cell number
+     * @param around room for the neighbours of the cell
+     * @return the number of items the option covers
+     */
+    private int optionSize(int cell, int[] around) {
+        int rowSeg = puzzle.getRowSegment(cell);
+        int colSeg = puzzle.getColSegment(cell);
+        int size = 2 + puzzle.getSegmentTo(rowSeg) - puzzle.getSegmentFrom(rowSeg)
+                + puzzle.getSegmentTo(colSeg) - puzzle.getSegmentFrom(colSeg) - 1;
+        int n = puzzle.getNeighbors(cell, around);
+        for (int i = 0; i < n; i++) {
+            if (puzzle.getPillar(around[i]) > 0) {
+                size++;
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,98 @@
+package backtracking;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The file handling the tools that read and write many safes share.
+ */
+class SafeFiles {
+    /**
+     * Something read from a safe file.
+     * @param <T> what is read
+     */
+    interface Reader<T> {
+        /**
+         * Read a safe file.
+         * @param file the file
+         * @return what was read
+         * @throws IOException if a file can not be read or written
+         */
+        T read(Path file) throws IOException;
+    }
+
+    /**
+     * Turn the files and directories given into the list of safe files:
+     * a file as it is, and a directory as the regular files in it, by
+     * name.
+     * @param names the files and directories
+     * @return the safe files
+     * @throws IOException if a directory can not be read
+     */
+    static List<Path> collect(List<String> names) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String name : names) {
+            Path path = Paths.get(name);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> list = Files.list(path)) {
+                    files.addAll(list.filter(Files::isRegularFile).sorted()
+                            .collect(Collectors.toList()));
+                }
+            } else {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Read a safe file, and print why if it is not a safe: it is not
+     * there, or it is not in the format of a safe.
+     * @param file the file
+     * @param reader what to read from it
+     * @param report where to print
+     * @param <T> what is read
+     * @return what was read, or null if the file is not a safe
+     * @throws IOException if anything else can not be read or written
+     */
+    static <T> T read(Path file, Reader<T> reader, PrintStream report) throws IOException {
+        try {
+            return reader.read(file);
+        } catch (FileNotFoundException | RuntimeException e) {
+            report.println(file + ": not a safe (" + e + ")");
+            return null;
+        }
+    }
+
+    /**
+     * Create an empty file next to a target, to write the target under and
+     * then move it into place.  Unlike Files.createTempFile, the file gets
+     * the permissions any new file gets, so the target has them too once
+     * it is moved.
+     * @param target the file that is to be written
+     * @return the new file, in the directory of the target
+     * @throws IOException if the file can not be created
+     */
+    static Path createTemp(Path target) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        while (true) {
+            Path temp = dir.resolve("." + target.getFileName() + "."
+                    + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try {
+                return Files.createFile(temp);
+            } catch (FileAlreadyExistsException e) {
+                // another writer took the name; try another one
+            }
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package backtracking;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Makes up random safes that have a solution, of any size, to solve in
+ * bulk.  A safe is made in three steps:
+ *
+ * - every cell becomes a pillar with a given chance.
+ * - the other cells are visited in a random order, and each one that no
+ *   laser lights yet gets a laser.  In the end every cell is lit and no
+ *   laser lights another, so the lasers are a solution.
+ * - every pillar gets the number of lasers next to it, or, with a given
+ *   chance, stays an X.
+ *
+ * Asked for a unique solution, the generator counts the solutions of
+ * every safe it makes, up to two, and makes another one until a safe has
+ * exactly one.  Random lasers leave a big safe with many solutions, so
+ * that is for the smaller sizes.
+ *
+ * The safe with a given seed is the same every time.  A corpus of safes
+ * gives every safe a seed of its own, made from the corpus seed and the
+ * number of the safe, so the safes are made in parallel and still come
+ * out the same whatever the number of threads.  The files are in the
+ * format SafeConfig and SafeModel read; a corpus can also be written as
+ * one SafePack.
+ */
+public class SafeGenerator {
+    /** the chance of a cell to be a pillar, unless set otherwise */
+    public final static double PILLAR_DENSITY = 0.2;
+    /** the chance of a pillar to stay an X, unless set otherwise */
+    public final static double HIDDEN_FRACTION = 0.3;
+    /** how many safes to make for a unique one, unless set otherwise */
+    public final static int MAX_ATTEMPTS = 1000;
+
+    private final int rows;
+    private final int cols;
+    private double pillarDensity;
+    private double hiddenFraction;
+    private boolean unique;
+    private int maxAttempts;
+
+    /**
+     * constructor. create a generator of safes of a given size.
+     * @param rows the number of rows
+     * @param cols the number of columns
+     */
+    public SafeGenerator(int rows, int cols) {
+        if (rows < 1 || cols < 1) {
+            throw new IllegalArgumentException("safe size out of range: " + rows + "x" + cols);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.pillarDensity = PILLAR_DENSITY;
+        this.hiddenFraction = HIDDEN_FRACTION;
+        this.unique = false;
+        this.maxAttempts = MAX_ATTEMPTS;
+    }
+
+    /**
+     * Setter function. set the chance of a cell to be a pillar.
+     * @param pillarDensity a chance from 0 to 1
+     */
+    public void setPillarDensity(double pillarDensity) {
+        this.pillarDensity = pillarDensity;
+    }
+
+    /**
+     * Setter function. set the chance of a pillar to be shown as an X and
+     * not by its number.
+     * @param hiddenFraction a chance from 0 to 1
+     */
+    public void setHiddenFraction(double hiddenFraction) {
+        this.hiddenFraction = hiddenFraction;
+    }
+
+    /**
+     * Setter function. ask for safes with exactly one solution or not.
+     * @param unique true to check every safe with a solver
+     */
+    public void setUnique(boolean unique) {
+        this.unique = unique;
+    }
+
+    /**
+     * Setter function. set how many safes are made at most to find one
+     * with a unique solution.
+     * @param maxAttempts the number of attempts
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Make a safe.
+     * @param seed the seed of the random numbers
+     * @return the grid of the safe, without its lasers
+     * @throws IllegalStateException if a unique safe is asked for and
+     * none turned up within the attempts
+     */
+    public String[][] generate(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            String[][] grid = attempt(random);
+            if (!unique || isUnique(grid)) {
+                return grid;
+            }
+        }
+        throw new IllegalStateException("no safe with a unique solution in "
+                + maxAttempts + " attempts");
+    }
+
+    /**
+     * Make a number of safes, in parallel, and write each to a file of its
+     * own in a directory: safe-0.txt, safe-1.txt and so on, with the
+     * numbers padded to the same width.
+     * @param dir the directory, which is created if it is not there
+     * @param count the number of safes
+     * @param seed the seed of the corpus
+     * @throws IOException if a file can not be written
+     */
+    public void writeCorpus(Path dir, int count, long seed) throws IOException {
+        Files.createDirectories(dir);
+        String name = "safe-%0" + String.valueOf(Math.max(count - 1, 0)).length() + "d.txt";
+        try {
+            IntStream.range(0, count).parallel().forEach(i -> {
+                String[][] grid = generate(seedOf(seed, i));
+                String text = rows + " " + cols + "\n" + SafePuzzle.format(grid);
+                try {
+                    Files.write(dir.resolve(String.format(name, i)), text.getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Make a number of safes, in parallel, and write them in order to a
+     * SafePack.  Safe i of the pack is the safe writeCorpus writes to its
+     * i-th file.
+     * @param file the pack
+     * @param count the number of safes
+     * @param seed the seed of the corpus
+     * @throws IOException if the pack can not be written
+     */
+    public void writePack(Path file, int count, long seed) throws IOException {
+        SafePack.Writer writer = new SafePack.Writer(file);
+        try {
+            IntStream.range(0, count).parallel().mapToObj(i -> generate(seedOf(seed, i)))
+                    .forEachOrdered(grid -> {
+                        try {
+                            writer.add(grid);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+            writer.close();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            writer.discard();
+        }
+    }
+
+    /**
+     * The seed of one safe of a corpus.  The number of the safe is spread
+     * over all the bits, so safes next to each other get seeds that have
+     * nothing in common.
+     * @param seed the seed of the corpus
+     * @param i the number of the safe
+     * @return the seed of the safe
+     */
+    public static long seedOf(long seed, int i) {
+        long z = seed + (i + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Make one safe, unique or not.
+     * @param random the random numbers
+     * @return the grid of the safe, without its lasers
+     */
+    private String[][] attempt(SplittableRandom random) {
+        String[][] grid = new String[rows][cols];
+        for (String[] row : grid) {
+            for (int col = 0; col < cols; col++) {
+                row[col] = random.nextDouble() < pillarDensity ? SafeConfig.ANYNUM : SafeConfig.EMPTY;
+            }
+        }
+        SafePuzzle puzzle = new SafePuzzle(grid);
+
+        // visit the cells in a random order, and put a laser in every one
+        // that is not lit yet
+        int cells = rows * cols;
+        int[] order = new int[cells];
+        for (int cell = 0; cell < cells; cell++) {
+            order[cell] = cell;
+        }
+        for (int i = cells - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        boolean[] lasers = new boolean[cells];
+        boolean[] lit = new boolean[puzzle.getSegmentCount()];
+        for (int cell : order) {
+            if (!puzzle.isPillar(cell) && !lit[puzzle.getRowSegment(cell)]
+                    && !lit[puzzle.getColSegment(cell)]) {
+                lasers[cell] = true;
+                lit[puzzle.getRowSegment(cell)] = true;
+                lit[puzzle.getColSegment(cell)] = true;
+            }
+        }
+
+        // number the pillars that are not hidden
+        int[] around = new int[4];
+        for (int cell = 0; cell < cells; cell++) {
+            if (puzzle.isPillar(cell) && random.nextDouble() >= hiddenFraction) {
+                int count = 0;
+                int n = puzzle.getNeighbors(cell, around);
+                for (int i = 0; i < n; i++) {
+                    count += lasers[around[i]] ? 1 : 0;
+                }
+                grid[cell / cols][cell % cols] = String.valueOf(count);
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Does a safe have exactly one solution?  It is counted up to two
+     * with a board that propagates and branches on the most constrained
+     * cell.
+     * @param grid the grid of the safe
+     * @return true if it has one solution and no more
+     */
+    private static boolean isUnique(String[][] grid) {
+        SafeBoard board = new SafeBoard(new SafePuzzle(grid));
+        board.setPropagation(true);
+        board.setCellOrder(SafeBoard.CellOrder.MOST_CONSTRAINED);
+        return board.presolve() != null
+                && new IterativeBacktracker(false).countSolutions(board, 2) == 1;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 5 || args.length > 8) {
+            System.out.println("Usage: java SafeGenerator rows cols count seed dir|file.pack "
+                    + "[pillar% [hidden% [unique]]]");
+            return;
+        }
+        SafeGenerator generator = new SafeGenerator(Integer.parseInt(args[0]), Integer.parseInt(args[1]));
+        int count = Integer.parseInt(args[2]);
+        long seed = Long.parseLong(args[3]);
+        if (args.length > 5) {
+            generator.setPillarDensity(Double.parseDouble(args[5]) / 100);
+        }
+        if (args.length > 6) {
+            generator.setHiddenFraction(Double.parseDouble(args[6]) / 100);
+        }
+        if (args.length > 7) {
+            generator.setUnique(args[7].equals("true"));
+        }
+
+        double start = System.currentTimeMillis();
+        if (args[4].endsWith(".pack")) {
+            generator.writePack(Paths.get(args[4]), count, seed);
+        } else {
+            generator.writeCorpus(Paths.get(args[4]), count, seed);
+        }
+        System.out.println("Safes written: " + count);
+        System.out.println("Elapsed time: " +
+                (System.currentTimeMillis() - start)/1000.0 + " seconds.");
+    }
+}
@@ -0,0 +1,503 @@
+package backtracking;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Many safes packed into one binary file.  A safe takes half a byte per
+ * cell, where the text format takes two, and is read without a Scanner,
+ * a split or a string per cell.
+ *
+ * The file is made of a header, the safes one after the other, and an
+ * index:
+ *
+ * - the header: the magic number "LSPK", the version, the number of
+ *   safes, and where the index starts.
+ * - a safe: its rows and columns, a CRC32 of the rows, the columns and
+ *   the cells, and the cells in row-major order, two to a byte, the
+ *   first in the high half.
+ * - the index: where every safe starts.
+ *
+ * A cell is one of the codes below: empty, laser, beam, X, or a pillar
+ * with its number, so a solution packs as well as a safe does.  Every
+ * number is big-endian.
+ *
+ * The reader maps the whole file into memory with FileChannel.map, so
+ * opening a pack reads nothing but the header, and a safe is read
+ * straight out of the mapping when it is asked for, with no copy of its
+ * bytes.  The reads are at absolute positions, so any number of threads
+ * can read the same pack.  The checksum of a safe is checked every time
+ * the safe is read.  One mapping holds at most 2GB, and so does a pack.
+ *
+ * The converter packs text safes into a pack, unpacks a pack into text
+ * safes, and checks every safe of a pack.
+ */
+public class SafePack {
+    /** the first four bytes of a pack: "LSPK" */
+    public final static int MAGIC = 0x4C53504B;
+    /** the version of the format this class reads and writes */
+    public final static int VERSION = 1;
+
+    /** the code of an empty cell */
+    public final static int EMPTY = 0;
+    /** the code of a laser */
+    public final static int LASER = 1;
+    /** the code of a cell a laser lights */
+    public final static int BEAM = 2;
+    /** the code of an 'X' pillar */
+    public final static int ANYNUM = 3;
+    /** the code of a pillar that needs no laser; a pillar that needs n is DIGIT + n */
+    public final static int DIGIT = 4;
+
+    /** the bytes of the header: magic, version, count and index offset */
+    private final static int HEADER = 4 + 4 + 4 + 8;
+    /** the bytes before the cells of a safe: rows, columns and checksum */
+    private final static int SAFE_HEADER = 4 + 4 + 4;
+
+    private final Path file;
+    private final MappedByteBuffer map;
+    private final int count;
+    private final int index;
+
+    /**
+     * constructor. map a pack into memory.  The file is closed again, and
+     * the mapping stays until the pack is garbage.
+     * @param file the pack
+     * @throws IOException if the file can not be read or is not a pack
+     */
+    public SafePack(Path file) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + ": a pack is at most 2GB");
+            }
+            this.map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        this.map.order(ByteOrder.BIG_ENDIAN);
+        if (map.capacity() < HEADER || map.getInt(0) != MAGIC) {
+            throw new IOException(file + ": not a safe pack");
+        }
+        if (map.getInt(4) != VERSION) {
+            throw new IOException(file + ": pack version " + map.getInt(4) + " is not " + VERSION);
+        }
+        this.count = map.getInt(8);
+        long index = map.getLong(12);
+        if (count < 0 || index < HEADER || index + 8L * count > map.capacity()) {
+            throw new IOException(file + ": the index of the pack is damaged");
+        }
+        this.index = (int) index;
+    }
+
+    /**
+     * Is a file a pack?  Only its magic number is read.
+     * @param file the file
+     * @return true if it starts like a pack
+     */
+    public static boolean isPack(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // read until the four bytes are in
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Getter function. return the file of the pack.
+     * @return the file
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Getter function. return the number of safes in the pack.
+     * @return the number of safes
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Getter function. return the number of rows of a safe.
+     * @param i the number of the safe, from 0
+     * @return the number of rows
+     */
+    public int getRows(int i) {
+        return map.getInt(offset(i));
+    }
+
+    /**
+     * Getter function. return the number of columns of a safe.
+     * @param i the number of the safe, from 0
+     * @return the number of columns
+     */
+    public int getCols(int i) {
+        return map.getInt(offset(i) + 4);
+    }
+
+    /**
+     * Getter function. return the code of a cell of a safe, read straight
+     * out of the mapping.  The checksum is not checked.
+     * @param i the number of the safe, from 0
+     * @param cell the number of the cell, row * cols + col
+     * @return EMPTY, LASER, BEAM, ANYNUM, or DIGIT plus the number of a
+     * pillar
+     */
+    public int getCell(int i, int cell) {
+        int b = map.get(offset(i) + SAFE_HEADER + cell / 2);
+        return (cell % 2 == 0 ? b >> 4 : b) & 0xF;
+    }
+
+    /**
+     * Getter function. return the cells of a safe, two to a byte, as a
+     * read-only view of the mapping.  Nothing is copied.
+     * @param i the number of the safe, from 0
+     * @return the packed cells
+     */
+    public ByteBuffer getCells(int i) {
+        int start = offset(i) + SAFE_HEADER;
+        ByteBuffer cells = map.asReadOnlyBuffer();
+        cells.limit(start + bytes(getRows(i), getCols(i))).position(start);
+        return cells.slice();
+    }
+
+    /**
+     * Does the checksum of a safe match its bytes?
+     * @param i the number of the safe, from 0
+     * @return true if the safe is whole
+     */
+    public boolean verify(int i) {
+        int start = offset(i);
+        int rows = getRows(i);
+        int cols = getCols(i);
+        if (rows < 0 || cols < 0 || (long) start + SAFE_HEADER + bytes(rows, cols) > index) {
+            return false;
+        }
+        ByteBuffer bytes = map.asReadOnlyBuffer();
+        bytes.limit(start + SAFE_HEADER + bytes(rows, cols)).position(start);
+        CRC32 crc = new CRC32();
+        crc.update(bytes.slice().limit(8));
+        crc.update(bytes.position(start + SAFE_HEADER));
+        return (int) crc.getValue() == map.getInt(start + 8);
+    }
+
+    /**
+     * Read the layout of a safe, with no grid of strings in between.
+     * Lasers and beams in the pack are left out.
+     * @param i the number of the safe, from 0
+     * @return the layout
+     * @throws IOException if the checksum does not match
+     */
+    public SafePuzzle getPuzzle(int i) throws IOException {
+        check(i);
+        int rows = getRows(i);
+        int cols = getCols(i);
+        int[] pillar = new int[rows * cols];
+        for (int cell = 0; cell < pillar.length; cell++) {
+            int code = getCell(i, cell);
+            pillar[cell] = code >= DIGIT ? code - DIGIT : code == ANYNUM ? SafePuzzle.ANY : SafePuzzle.NONE;
+        }
+        return new SafePuzzle(rows, cols, pillar);
+    }
+
+    /**
+     * Read the lasers of a safe, which are there if a solution was packed.
+     * @param i the number of the safe, from 0
+     * @return one entry per cell, true where there is a laser
+     * @throws IOException if the checksum does not match
+     */
+    public boolean[] getLasers(int i) throws IOException {
+        check(i);
+        boolean[] lasers = new boolean[getRows(i) * getCols(i)];
+        for (int cell = 0; cell < lasers.length; cell++) {
+            lasers[cell] = getCell(i, cell) == LASER;
+        }
+        return lasers;
+    }
+
+    /**
+     * Read a safe as a grid of strings, as SafePuzzle.read gives it.
+     * @param i the number of the safe, from 0
+     * @return the grid
+     * @throws IOException if the checksum does not match
+     */
+    public String[][] getGrid(int i) throws IOException {
+        check(i);
+        int cols = getCols(i);
+        String[][] grid = new String[getRows(i)][cols];
+        for (int cell = 0; cell < grid.length * cols; cell++) {
+            grid[cell / cols][cell % cols] = decode(getCell(i, cell));
+        }
+        return grid;
+    }
+
+    /**
+     * Where a safe starts in the file.
+     * @param i the number of the safe, from 0
+     * @return the offset of its rows
+     */
+    private int offset(int i) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("safe " + i + " of a pack of " + count);
+        }
+        long offset = map.getLong(index + 8 * i);
+        if (offset < HEADER || offset + SAFE_HEADER > index) {
+            throw new IllegalStateException(file + ": the index of safe " + i + " is damaged");
+        }
+        return (int) offset;
+    }
+
+    /**
+     * Make sure a safe is whole before it is read.
+     * @param i the number of the safe, from 0
+     * @throws IOException if the checksum does not match
+     */
+    private void check(int i) throws IOException {
+        if (!verify(i)) {
+            throw new IOException(file + ": safe " + i + " is damaged");
+        }
+    }
+
+    /**
+     * The bytes the cells of a safe take.
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @return the number of bytes
+     */
+    private static int bytes(int rows, int cols) {
+        return (int) (((long) rows * cols + 1) / 2);
+    }
+
+    /**
+     * Turn a cell of a safe file into its code.
+     * @param cell the cell as it appears in the file
+     * @return its code
+     */
+    public static int encode(String cell) {
+        switch (cell) {
+            case SafeConfig.EMPTY:
+                return EMPTY;
+            case SafeConfig.LASER:
+                return LASER;
+            case SafeConfig.BEAM:
+                return BEAM;
+            case SafeConfig.ANYNUM:
+                return ANYNUM;
+            default:
+                int number = Integer.parseInt(cell);
+                if (number < 0 || DIGIT + number > 0xF) {
+                    throw new IllegalArgumentException("a pillar can not need " + number + " lasers");
+                }
+                return DIGIT + number;
+        }
+    }
+
+    /**
+     * Turn a code into the cell as it appears in a safe file.
+     * @param code the code
+     * @return the cell
+     */
+    public static String decode(int code) {
+        switch (code) {
+            case EMPTY:
+                return SafeConfig.EMPTY;
+            case LASER:
+                return SafeConfig.LASER;
+            case BEAM:
+                return SafeConfig.BEAM;
+            case ANYNUM:
+                return SafeConfig.ANYNUM;
+            default:
+                return String.valueOf(code - DIGIT);
+        }
+    }
+
+    /**
+     * Writes a pack, one safe after the other, so the safes need not all
+     * be in memory.  The pack is written under a temporary name and moved
+     * into place when it is closed, so it is either whole or not there.
+     * A pack that went wrong halfway is discarded and not closed.
+     */
+    public static class Writer implements Closeable {
+        private final Path file;
+        private final Path temp;
+        private final FileChannel channel;
+        private final List<Long> offsets;
+        private boolean closed;
+
+        /**
+         * constructor. start a pack.
+         * @param file the pack to write
+         * @throws IOException if the file can not be written
+         */
+        public Writer(Path file) throws IOException {
+            this.file = file;
+            this.temp = SafeFiles.createTemp(file);
+            this.channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+            this.offsets = new ArrayList<>();
+            this.channel.position(HEADER);
+        }
+
+        /**
+         * Getter function. return the number of safes written so far.
+         * @return the number of safes
+         */
+        public int getCount() {
+            return offsets.size();
+        }
+
+        /**
+         * Add a safe, or a solution, to the pack.
+         * @param grid the grid of the safe
+         * @throws IOException if the file can not be written
+         */
+        public void add(String[][] grid) throws IOException {
+            int rows = grid.length;
+            int cols = rows == 0 ? 0 : grid[0].length;
+            ByteBuffer safe = ByteBuffer.allocate(SAFE_HEADER + bytes(rows, cols));
+            safe.putInt(rows).putInt(cols).putInt(0);
+            for (int cell = 0; cell < rows * cols; cell += 2) {
+                int high = encode(grid[cell / cols][cell % cols]);
+                int low = cell + 1 < rows * cols ? encode(grid[(cell + 1) / cols][(cell + 1) % cols]) : 0;
+                safe.put((byte) (high << 4 | low));
+            }
+            CRC32 crc = new CRC32();
+            crc.update(safe.array(), 0, 8);
+            crc.update(safe.array(), SAFE_HEADER, safe.capacity() - SAFE_HEADER);
+            safe.putInt(8, (int) crc.getValue());
+            if (channel.position() + safe.capacity() + 8L * (offsets.size() + 1) > Integer.MAX_VALUE) {
+                throw new IOException(file + ": a pack is at most 2GB");
+            }
+            offsets.add(channel.position());
+            write(safe.flip());
+        }
+
+        /**
+         * Write the index and the header, and move the pack into place.
+         * @throws IOException if the file can not be written
+         */
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                long index = channel.position();
+                ByteBuffer offsets = ByteBuffer.allocate(8 * this.offsets.size());
+                for (long offset : this.offsets) {
+                    offsets.putLong(offset);
+                }
+                write(offsets.flip());
+                channel.position(0);
+                write(ByteBuffer.allocate(HEADER).putInt(MAGIC).putInt(VERSION)
+                        .putInt(this.offsets.size()).putLong(index).flip());
+                channel.close();
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                channel.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        /**
+         * Give up on the pack: the safes written so far are deleted, and
+         * the file is left as it was.  A pack that is closed already is
+         * left alone.
+         * @throws IOException if the temporary file can not be deleted
+         */
+        public void discard() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            channel.close();
+            Files.deleteIfExists(temp);
+        }
+
+        /**
+         * Write all of a buffer at the position of the channel.
+         * @param bytes the buffer
+         * @throws IOException if the file can not be written
+         */
+        private void write(ByteBuffer bytes) throws IOException {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * Pack text safes into a pack, unpack a pack into text safes, or check
+     * every safe of a pack.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || !(args[0].equals("pack") && args.length > 2
+                || args[0].equals("unpack") && args.length == 3
+                || args[0].equals("check") && args.length == 2)) {
+            System.out.println("Usage: java SafePack pack out.pack safe.in|dir...");
+            System.out.println("       java SafePack unpack in.pack dir");
+            System.out.println("       java SafePack check in.pack");
+            return;
+        }
+        double start = System.currentTimeMillis();
+        Path pack = Paths.get(args[1]);
+        if (args[0].equals("pack")) {
+            List<Path> files = SafeFiles.collect(List.of(args).subList(2, args.length));
+            try (Writer writer = new Writer(pack)) {
+                for (Path file : files) {
+                    SafeFiles.read(file, safe -> {
+                        writer.add(SafePuzzle.read(safe.toString()));
+                        return safe;
+                    }, System.out);
+                }
+                System.out.println("Safes packed: " + writer.getCount() + " of " + files.size());
+            }
+            System.out.println("Pack size: " + Files.size(pack) + " bytes");
+        } else if (args[0].equals("unpack")) {
+            SafePack safes = new SafePack(pack);
+            Path dir = Paths.get(args[2]);
+            Files.createDirectories(dir);
+            String name = "safe-%0" + String.valueOf(Math.max(safes.getCount() - 1, 0)).length() + "d.txt";
+            for (int i = 0; i < safes.getCount(); i++) {
+                String[][] grid = safes.getGrid(i);
+                String text = safes.getRows(i) + " " + safes.getCols(i) + "\n" + SafePuzzle.format(grid);
+                Files.write(dir.resolve(String.format(name, i)), text.getBytes(StandardCharsets.UTF_8));
+            }
+            System.out.println("Safes unpacked: " + safes.getCount());
+        } else {
+            SafePack safes = new SafePack(pack);
+            int damaged = 0;
+            for (int i = 0; i < safes.getCount(); i++) {
+                if (!safes.verify(i)) {
+                    damaged++;
+                    System.out.println(pack + ": safe " + i + " is damaged");
+                }
+            }
+            System.out.println("Safes: " + safes.getCount() + ", damaged: " + damaged);
+        }
+        System.out.println("Elapsed time: " +
+                (System.currentTimeMillis() - start)/1000.0 + " seconds.");
+    }
+}
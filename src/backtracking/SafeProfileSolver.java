@@ -0,0 +1,436 @@
+package backtracking;
+
+import java.io.FileNotFoundException;
+import java.util.Arrays;
+
+/**
+ * Counts the solutions of a safe by dynamic programming over a broken
+ * profile, for safes that are long and narrow.  The safe is turned, if
+ * need be, so that its rows are the short side.  The cells are then
+ * taken one at a time in row-major order, and all the ways of deciding
+ * the cells so far are merged by what they leave for the cells still to
+ * come.  That is one code per column, for the last cell decided in it:
+ *
+ * - NONE: its column segment has no laser and nothing waiting on one.
+ * - LASER: its column segment has a laser.
+ * - LASER_ADJ: the same, with the laser in that cell and a pillar below.
+ * - NEED: a cell of its column segment can only be lit from below.
+ * - PEND: a cell of the current row segment is not lit yet; a laser
+ *   further on in the row lights it, otherwise it becomes NEED.
+ * - DOWN0 and DOWN1: the cell is a numbered pillar that needs no more
+ *   lasers, or one more, below it.
+ *
+ * plus whether the current row segment has a laser, whether the last
+ * cell holds one, and how many more lasers a numbered pillar just to the
+ * left needs from its right and lower neighbours.  The codes take 3 bits
+ * a column, so a profile fits in one long and the states are kept in a
+ * hash map of primitive longs to counts.  The work grows with the
+ * number of states a profile of the short side can take, and only
+ * linearly with the long side.
+ *
+ * A safe whose short side is wider than MAX_WIDTH does not fit in a
+ * long; its solutions are counted by the backtracker instead.
+ */
+public class SafeProfileSolver {
+    /** the widest profile that fits in a long */
+    public final static int MAX_WIDTH = 20;
+
+    private final static int NONE = 0;
+    private final static int LASER = 1;
+    private final static int NEED = 2;
+    private final static int PEND = 3;
+    private final static int DOWN0 = 4;
+    private final static int DOWN1 = 5;
+    private final static int LASER_ADJ = 6;
+
+    // where the flags are in a profile
+    private final static int ROW_LASER = 60;
+    private final static int LAST_LASER = 61;
+    private final static int LEFT_NEED = 62;
+    /** LEFT_NEED when there is no numbered pillar to the left */
+    private final static int NO_PILLAR = 3;
+
+    private final SafePuzzle puzzle;
+    private final int height;
+    private final int width;
+    private final int[] pillar;
+    private long states;
+    private int widest;
+
+    /**
+     * constructor. read a file and set up the solver of its safe.
+     * @param filename file name
+     * @throws FileNotFoundException if file does not exist
+     */
+    public SafeProfileSolver(String filename) throws FileNotFoundException {
+        this(new SafePuzzle(filename));
+    }
+
+    /**
+     * constructor. set up the solver of a safe.
+     * @param puzzle the layout of the safe
+     */
+    public SafeProfileSolver(SafePuzzle puzzle) {
+        this.puzzle = puzzle;
+        boolean turn = puzzle.getCols() > puzzle.getRows();
+        this.height = turn ? puzzle.getCols() : puzzle.getRows();
+        this.width = turn ? puzzle.getRows() : puzzle.getCols();
+        this.pillar = new int[height * width];
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                int cell = turn ? col * puzzle.getCols() + row : row * puzzle.getCols() + col;
+                this.pillar[row * width + col] = puzzle.getPillar(cell);
+            }
+        }
+    }
+
+    /**
+     * Getter function. return the width of the profile: the short side of
+     * the safe.
+     * @return the number of columns in the profile
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Can the solutions be counted over the profile, or does the count
+     * fall back to the backtracker?
+     * @return true if the profile fits in a long
+     */
+    public boolean fitsProfile() {
+        return width <= MAX_WIDTH;
+    }
+
+    /**
+     * Getter function. return how many profile states the last count
+     * went through.
+     * @return the number of states, over all cells
+     */
+    public long getStateCount() {
+        return states;
+    }
+
+    /**
+     * Getter function. return the most profile states the last count had
+     * at once.
+     * @return the largest number of states after a cell
+     */
+    public int getMaxStates() {
+        return widest;
+    }
+
+    /**
+     * Does the safe have a solution?
+     * @return true if it has at least one
+     */
+    public boolean hasSolution() {
+        if (!fitsProfile()) {
+            SafeBoard board = searchBoard();
+            return board != null && new IterativeBacktracker(false).solveInPlace(board);
+        }
+        return countSolutions() > 0;
+    }
+
+    /**
+     * Count the solutions of the safe.  A count that does not fit in a
+     * long is given as Long.MAX_VALUE.
+     * @return the number of solutions
+     */
+    public long countSolutions() {
+        if (!fitsProfile()) {
+            SafeBoard board = searchBoard();
+            return board == null ? 0
+                    : new IterativeBacktracker(false).countSolutions(board, Long.MAX_VALUE);
+        }
+        states = 0;
+        widest = 0;
+        StateMap cur = new StateMap();
+        StateMap next = new StateMap();
+        cur.add((long) NO_PILLAR << LEFT_NEED, 1);
+        for (int row = 0; row < height; row++) {
+            for (int col = 0; col < width; col++) {
+                next.clear();
+                for (int i = 0; i < cur.size; i++) {
+                    step(row, col, cur.keys[cur.filled[i]], cur.counts[cur.filled[i]], next);
+                }
+                StateMap tmp = cur;
+                cur = next;
+                next = tmp;
+                states += cur.size;
+                widest = Math.max(widest, cur.size);
+            }
+        }
+        long total = 0;
+        for (int i = 0; i < cur.size; i++) {
+            if (finished(cur.keys[cur.filled[i]])) {
+                total = add(total, cur.counts[cur.filled[i]]);
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Decide one cell in every way a profile allows.
+     * @param row the row of the cell, in the turned safe
+     * @param col the column of the cell, in the turned safe
+     * @param key the profile before the cell
+     * @param count the number of ways to get to the profile
+     * @param next the profiles after the cell
+     */
+    private void step(int row, int col, long key, long count, StateMap next) {
+        int slot = getSlot(key, col);
+        boolean rowLaser = (key >>> ROW_LASER & 1) != 0;
+        boolean lastLaser = (key >>> LAST_LASER & 1) != 0;
+        int leftNeed = (int) (key >>> LEFT_NEED & 3);
+        long base = key & ((1L << ROW_LASER) - 1);
+        boolean hasDown = row < height - 1;
+        int value = pillar[row * width + col];
+
+        if (value != SafePuzzle.NONE) {
+            // the column and row segments end here
+            if (slot == NEED || slot == DOWN1) {
+                return;
+            }
+            if (leftNeed != NO_PILLAR) {
+                if (leftNeed > (hasDown ? 1 : 0)) {
+                    return;
+                }
+                base = setSlot(base, col - 1, leftNeed == 1 ? DOWN1 : DOWN0);
+            }
+            base = pendToNeed(base);
+            int code = NONE;
+            int need = NO_PILLAR;
+            if (value >= 0) {
+                need = value - (slot == LASER_ADJ ? 1 : 0) - (lastLaser ? 1 : 0);
+                int room = (col < width - 1 ? 1 : 0) + (hasDown ? 1 : 0);
+                if (need < 0 || need > room) {
+                    return;
+                }
+                code = DOWN0;
+                if (col == width - 1) {
+                    code = need == 1 ? DOWN1 : DOWN0;
+                    need = NO_PILLAR;
+                }
+            }
+            next.add(setSlot(base, col, code) | (long) need << LEFT_NEED, count);
+            return;
+        }
+
+        int colSeg = slot == DOWN0 || slot == DOWN1 ? NONE : slot == LASER_ADJ ? LASER : slot;
+        if (slot != DOWN1) {
+            emit(row, col, base, count, false, colSeg, rowLaser, leftNeed, next);
+        }
+        if (slot != DOWN0 && !rowLaser && colSeg != LASER) {
+            emit(row, col, base, count, true, colSeg, rowLaser, leftNeed, next);
+        }
+    }
+
+    /**
+     * Add the profile after a cell that is not a pillar.
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @param base the column codes before the cell
+     * @param count the number of ways to get to the profile
+     * @param laser true if the cell holds a laser
+     * @param colSeg NONE, LASER or NEED for the column segment of the cell
+     * @param rowLaser true if the row segment already has a laser
+     * @param leftNeed the lasers a pillar to the left still needs
+     * @param next the profiles after the cell
+     */
+    private void emit(int row, int col, long base, long count, boolean laser, int colSeg,
+                      boolean rowLaser, int leftNeed, StateMap next) {
+        boolean hasDown = row < height - 1;
+        if (leftNeed != NO_PILLAR) {
+            int rest = leftNeed - (laser ? 1 : 0);
+            if (rest < 0 || rest > (hasDown ? 1 : 0)) {
+                return;
+            }
+            base = setSlot(base, col - 1, rest == 1 ? DOWN1 : DOWN0);
+        }
+        int code;
+        if (laser) {
+            base = pendToNone(base);
+            code = hasDown && pillar[(row + 1) * width + col] >= 0 ? LASER_ADJ : LASER;
+            rowLaser = true;
+        } else if (colSeg == LASER || colSeg == NEED) {
+            code = colSeg;
+        } else {
+            code = rowLaser ? NONE : PEND;
+        }
+        long key = setSlot(base, col, code);
+        if (col == width - 1) {
+            // the row segment ends with the row
+            key = pendToNeed(key);
+        } else {
+            key |= (rowLaser ? 1L : 0) << ROW_LASER | (laser ? 1L : 0) << LAST_LASER;
+        }
+        next.add(key | (long) NO_PILLAR << LEFT_NEED, count);
+    }
+
+    /**
+     * Is a profile after the last cell a solution: no cell waiting to be
+     * lit and no pillar waiting for a laser?
+     * @param key the profile
+     * @return true if it is
+     */
+    private boolean finished(long key) {
+        for (int col = 0; col < width; col++) {
+            int slot = getSlot(key, col);
+            if (slot == NEED || slot == PEND || slot == DOWN1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Turn every PEND code into NEED, since the row segment ended without
+     * a laser.
+     * @param key the profile
+     * @return the new profile
+     */
+    private long pendToNeed(long key) {
+        for (int col = 0; col < width; col++) {
+            if (getSlot(key, col) == PEND) {
+                key = setSlot(key, col, NEED);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * Turn every PEND code into NONE, since a laser lit the row segment.
+     * @param key the profile
+     * @return the new profile
+     */
+    private long pendToNone(long key) {
+        for (int col = 0; col < width; col++) {
+            if (getSlot(key, col) == PEND) {
+                key = setSlot(key, col, NONE);
+            }
+        }
+        return key;
+    }
+
+    /**
+     * The code of a column in a profile.
+     * @param key the profile
+     * @param col the column
+     * @return the code
+     */
+    private static int getSlot(long key, int col) {
+        return (int) (key >>> (3 * col)) & 7;
+    }
+
+    /**
+     * Set the code of a column in a profile.
+     * @param key the profile
+     * @param col the column
+     * @param code the code
+     * @return the new profile
+     */
+    private static long setSlot(long key, int col, int code) {
+        return key & ~(7L << (3 * col)) | (long) code << (3 * col);
+    }
+
+    /**
+     * Add two counts, keeping at Long.MAX_VALUE once it is reached.
+     * @param a a count
+     * @param b a count
+     * @return the sum
+     */
+    private static long add(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    /**
+     * Set up a board for the backtracker to fall back on, with its forced
+     * cells fixed.
+     * @return the board, or null if the safe has no solution
+     */
+    private SafeBoard searchBoard() {
+        SafeBoard board = new SafeBoard(puzzle);
+        board.setPropagation(true);
+        board.setCellOrder(SafeBoard.CellOrder.MOST_CONSTRAINED);
+        return board.presolve() == null ? null : board;
+    }
+
+    /**
+     * The profiles after a cell with the number of ways to get to each,
+     * kept in arrays with linear probing.  The places in use are listed
+     * so the map can be walked and cleared without touching the rest.
+     */
+    private static class StateMap {
+        private long[] keys;
+        private long[] counts;
+        private boolean[] used;
+        private int[] filled;
+        private int size;
+        private int mask;
+
+        /**
+         * constructor. create an empty map.
+         */
+        StateMap() {
+            this.keys = new long[16];
+            this.counts = new long[16];
+            this.used = new boolean[16];
+            this.filled = new int[8];
+            this.mask = 15;
+        }
+
+        /**
+         * Add ways to get to a profile.
+         * @param key the profile
+         * @param count the number of ways
+         */
+        void add(long key, long count) {
+            int pos = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+            while (used[pos]) {
+                if (keys[pos] == key) {
+                    counts[pos] = SafeProfileSolver.add(counts[pos], count);
+                    return;
+                }
+                pos = (pos + 1) & mask;
+            }
+            used[pos] = true;
+            keys[pos] = key;
+            counts[pos] = count;
+            filled[size++] = pos;
+            if (size == filled.length) {
+                grow();
+            }
+        }
+
+        /**
+         * Empty the map.
+         */
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                used[filled[i]] = false;
+            }
+            size = 0;
+        }
+
+        /**
+         * Double the room of the map, so it stays at most half full.
+         */
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldCounts = counts;
+            int[] oldFilled = filled;
+            int n = size;
+            keys = new long[2 * oldKeys.length];
+            counts = new long[2 * oldKeys.length];
+            used = new boolean[2 * oldKeys.length];
+            filled = Arrays.copyOf(filled, 2 * filled.length);
+            mask = keys.length - 1;
+            size = 0;
+            for (int i = 0; i < n; i++) {
+                add(oldKeys[oldFilled[i]], oldCounts[oldFilled[i]]);
+            }
+        }
+    }
+}
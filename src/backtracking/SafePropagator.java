@@ -0,0 +1,244 @@
+package backtracking;
+
+/**
+ * Decides the cells of a safe that are forced by the ones already
+ * decided, until nothing more follows.  It knows these rules:
+ *
+ * - a pillar that has its number of lasers keeps all its other
+ *   neighbours dark; a 0 pillar does so from the start.
+ * - a pillar whose lasers plus undecided neighbours equal its number
+ *   needs a laser in every one of those neighbours; a 4 pillar does so
+ *   from the start.
+ * - a laser keeps every cell in its row and column segments dark.
+ * - a cell that is not lit and has only one cell left in its segments
+ *   that could still take a laser needs a laser in that cell.
+ *
+ * The propagator works on a SafeBoard and uses the board's trail as its
+ * queue: every cell decided after a given point of the trail is looked
+ * at once, and whatever it forces is pushed on the trail behind it.  So
+ * the board undoes propagated cells together with the step that caused
+ * them, and propagating allocates nothing.
+ */
+public class SafePropagator {
+
+    private final SafeBoard board;
+    private final SafePuzzle puzzle;
+    private final int[] around;
+    private final int[] next;
+    private long fixed;
+
+    /**
+     * constructor. create a propagator for a board.
+     * @param board the board whose cells are decided
+     */
+    public SafePropagator(SafeBoard board) {
+        this.board = board;
+        this.puzzle = board.getPuzzle();
+        this.around = new int[4];
+        this.next = new int[4];
+        this.fixed = 0;
+    }
+
+    /**
+     * Presolve helper for SafeConfig.  The forced cells of the config's
+     * safe are worked out on a board, and the forced lasers are added to
+     * the config so the backtracker does not have to find them.  The
+     * config has no way to show a cell that is forced to stay dark, so
+     * those are left for the backtracker.
+     * @param config a configuration at the start of its search
+     * @return the number of cells that were fixed, or -1 if the safe has
+     * no solution
+     */
+    public static int presolve(SafeConfig config) {
+        SafeBoard board = new SafeBoard(new SafePuzzle(config.getGrid()));
+        SafePropagator pre = board.presolve();
+        if (pre == null) {
+            return -1;
+        }
+        int cols = board.getPuzzle().getCols();
+        for (int cell = 0; cell < board.getPuzzle().getCellCount(); cell++) {
+            if (board.getState(cell) == SafeBoard.LASER) {
+                config.add(cell / cols, cell % cols);
+            }
+        }
+        return (int) pre.getFixedCount();
+    }
+
+    /**
+     * Getter function. return how many cells this propagator has decided.
+     * @return the number of cells fixed, over all calls
+     */
+    public long getFixedCount() {
+        return fixed;
+    }
+
+    /**
+     * Propagate from scratch: look at every pillar and every cell, then
+     * follow whatever they force.
+     * @return false if the safe turned out to have no solution
+     */
+    public boolean propagateAll() {
+        int start = board.getTrailSize();
+        for (int cell = 0; cell < puzzle.getCellCount(); cell++) {
+            if (puzzle.isPillar(cell)) {
+                if (!checkPillar(cell)) {
+                    return false;
+                }
+            } else if (!checkCover(cell)) {
+                return false;
+            }
+        }
+        if (!drain(start)) {
+            return false;
+        }
+        fixed += board.getTrailSize() - start;
+        return true;
+    }
+
+    /**
+     * Propagate the cells decided since a point on the trail.
+     * @param mark the size of the trail before the last decision
+     * @return false if the decisions can not lead to a solution
+     */
+    public boolean propagate(int mark) {
+        boolean decided = board.getTrailSize() > mark;
+        if (!drain(mark)) {
+            return false;
+        }
+        fixed += board.getTrailSize() - mark - (decided ? 1 : 0);
+        return true;
+    }
+
+    /**
+     * Look at every cell on the trail from a point on, including the
+     * ones pushed while doing so, and apply the rules around it.
+     * @param mark the first position on the trail to look at
+     * @return false if a rule found that there is no solution
+     */
+    private boolean drain(int mark) {
+        for (int head = mark; head < board.getTrailSize(); head++) {
+            int cell = board.getTrailCell(head);
+            int n = puzzle.getNeighbors(cell, around);
+            for (int i = 0; i < n; i++) {
+                if (board.getState(around[i]) == SafeBoard.PILLAR && !checkPillar(around[i])) {
+                    return false;
+                }
+            }
+            if (!checkSegment(puzzle.getRowSegment(cell))
+                    || !checkSegment(puzzle.getColSegment(cell))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Apply the pillar rules to a pillar.
+     * @param cell the cell number of the pillar
+     * @return false if the pillar can no longer be satisfied
+     */
+    private boolean checkPillar(int cell) {
+        int value = puzzle.getPillar(cell);
+        if (value < 0) {
+            return true;
+        }
+        int n = puzzle.getNeighbors(cell, next);
+        int numLasers = 0;
+        int numOpen = 0;
+        for (int i = 0; i < n; i++) {
+            byte state = board.getState(next[i]);
+            if (state == SafeBoard.LASER) {
+                numLasers++;
+            } else if (state == SafeBoard.OPEN) {
+                numOpen++;
+            }
+        }
+        if (numLasers > value || numLasers + numOpen < value) {
+            return false;
+        }
+        if (numOpen == 0) {
+            return true;
+        }
+        if (numLasers == value) {
+            for (int i = 0; i < n; i++) {
+                if (board.getState(next[i]) == SafeBoard.OPEN) {
+                    board.decide(next[i], SafeBoard.DARK);
+                }
+            }
+        } else if (numLasers + numOpen == value) {
+            for (int i = 0; i < n; i++) {
+                if (board.getState(next[i]) == SafeBoard.OPEN) {
+                    board.placeLaser(next[i]);
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Apply the cover rule to every cell of a segment that just lost a
+     * cell that could have taken a laser.
+     * @param seg the segment number
+     * @return false if a cell of the segment can no longer be lit
+     */
+    private boolean checkSegment(int seg) {
+        if (board.getSegmentLasers(seg) > 0) {
+            return true;
+        }
+        for (int pos = puzzle.getSegmentFrom(seg); pos < puzzle.getSegmentTo(seg); pos++) {
+            if (!checkCover(puzzle.getSegmentCell(seg, pos))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Apply the cover rule to a cell: if it is dark and only one cell in
+     * its segments can still take a laser, that cell gets one.
+     * @param cell the cell number
+     * @return false if the cell can no longer be lit
+     */
+    private boolean checkCover(int cell) {
+        if (board.isLit(cell)) {
+            return true;
+        }
+        int rowSeg = puzzle.getRowSegment(cell);
+        int colSeg = puzzle.getColSegment(cell);
+        int candidates = board.getSegmentOpen(rowSeg) + board.getSegmentOpen(colSeg)
+                - (board.getState(cell) == SafeBoard.OPEN ? 1 : 0);
+        if (candidates == 0) {
+            return false;
+        }
+        if (candidates == 1) {
+            board.placeLaser(findOpen(cell, rowSeg, colSeg));
+        }
+        return true;
+    }
+
+    /**
+     * Find the undecided cell in the segments of a cell.
+     * @param cell the cell number
+     * @param rowSeg the row segment of the cell
+     * @param colSeg the column segment of the cell
+     * @return the undecided cell
+     */
+    private int findOpen(int cell, int rowSeg, int colSeg) {
+        if (board.getState(cell) == SafeBoard.OPEN) {
+            return cell;
+        }
+        for (int pos = puzzle.getSegmentFrom(rowSeg); pos < puzzle.getSegmentTo(rowSeg); pos++) {
+            int other = puzzle.getSegmentCell(rowSeg, pos);
+            if (board.getState(other) == SafeBoard.OPEN) {
+                return other;
+            }
+        }
+        for (int pos = puzzle.getSegmentFrom(colSeg); pos < puzzle.getSegmentTo(colSeg); pos++) {
+            int other = puzzle.getSegmentCell(colSeg, pos);
+            if (board.getState(other) == SafeBoard.OPEN) {
+                return other;
+            }
+        }
+        return cell;
+    }
+}
@@ -0,0 +1,427 @@
+package backtracking;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Scanner;
+
+/**
+ * The fixed layout of a safe: its size, where the pillars are and what
+ * numbers they carry, and how the pillars cut every row and column into
+ * segments.  A laser lights up exactly the row segment and the column
+ * segment it sits in, so the solvers work on segments instead of walking
+ * the grid one cell at a time.
+ *
+ * Cells are numbered in row-major order, cell = row * cols + col.  Row
+ * segments are numbered first, followed by the column segments.  The
+ * layout never changes once it is built, so every configuration of the
+ * same safe shares one instance.
+ */
+public class SafePuzzle {
+    /** pillar value of an 'X' pillar, which accepts any number of lasers */
+    public final static int ANY = -1;
+    /** pillar value of a cell that is not a pillar */
+    public final static int NONE = -2;
+
+    private final int rows;
+    private final int cols;
+    private final int[] pillar;
+    private final int[] rowSeg;
+    private final int[] colSeg;
+    private final int rowSegments;
+    private final int[] segLine;
+    private final int[] segFrom;
+    private final int[] segTo;
+
+    /**
+     * constructor. read a file and build the layout of the safe in it.
+     * @param filename file name
+     * @throws FileNotFoundException if file does not exist
+     */
+    public SafePuzzle(String filename) throws FileNotFoundException {
+        this(read(filename));
+    }
+
+    /**
+     * constructor. build the layout from a safe grid.  Lasers and beams in
+     * the grid are treated as empty cells.
+     * @param grid the safe grid
+     */
+    public SafePuzzle(String[][] grid) {
+        this(grid.length, grid.length == 0 ? 0 : grid[0].length, pillarsOf(grid));
+    }
+
+    /**
+     * constructor. build the layout from the pillar value of every cell,
+     * with no grid of strings in between.
+     * @param rows the number of rows
+     * @param cols the number of columns
+     * @param pillar the pillar value of every cell in row-major order:
+     *               NONE, ANY or the number of lasers the pillar needs.
+     *               It is kept, not copied.
+     */
+    public SafePuzzle(int rows, int cols, int[] pillar) {
+        if (pillar.length != rows * cols) {
+            throw new IllegalArgumentException("a " + rows + "x" + cols + " safe has "
+                    + rows * cols + " cells, not " + pillar.length);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        int cells = this.rows * this.cols;
+        this.pillar = pillar;
+
+        this.rowSeg = new int[cells];
+        this.colSeg = new int[cells];
+        int[] line = new int[2 * cells];
+        int[] from = new int[2 * cells];
+        int[] to = new int[2 * cells];
+        int segs = 0;
+
+        // row segments
+        for (int row = 0; row < this.rows; row++) {
+            int col = 0;
+            while (col < this.cols) {
+                if (this.pillar[row * this.cols + col] != NONE) {
+                    this.rowSeg[row * this.cols + col] = -1;
+                    col++;
+                    continue;
+                }
+                line[segs] = row;
+                from[segs] = col;
+                while (col < this.cols && this.pillar[row * this.cols + col] == NONE) {
+                    this.rowSeg[row * this.cols + col] = segs;
+                    col++;
+                }
+                to[segs] = col;
+                segs++;
+            }
+        }
+        this.rowSegments = segs;
+
+        // column segments
+        for (int col = 0; col < this.cols; col++) {
+            int row = 0;
+            while (row < this.rows) {
+                if (this.pillar[row * this.cols + col] != NONE) {
+                    this.colSeg[row * this.cols + col] = -1;
+                    row++;
+                    continue;
+                }
+                line[segs] = col;
+                from[segs] = row;
+                while (row < this.rows && this.pillar[row * this.cols + col] == NONE) {
+                    this.colSeg[row * this.cols + col] = segs;
+                    row++;
+                }
+                to[segs] = row;
+                segs++;
+            }
+        }
+
+        this.segLine = new int[segs];
+        this.segFrom = new int[segs];
+        this.segTo = new int[segs];
+        System.arraycopy(line, 0, this.segLine, 0, segs);
+        System.arraycopy(from, 0, this.segFrom, 0, segs);
+        System.arraycopy(to, 0, this.segTo, 0, segs);
+    }
+
+    /**
+     * Read a safe file into a grid of strings.
+     * @param filename file name
+     * @return the safe grid
+     * @throws FileNotFoundException if file does not exist
+     */
+    public static String[][] read(String filename) throws FileNotFoundException {
+        Scanner file = new Scanner(new File(filename));
+        int rows = file.nextInt();
+        int cols = file.nextInt();
+        file.nextLine();
+        String[][] grid = new String[rows][cols];
+        for (int row = 0; row < rows; row++) {
+            String[] next = file.nextLine().split(" ");
+            for (int col = 0; col < cols; col++) {
+                grid[row][col] = next[col];
+            }
+        }
+        file.close();
+        return grid;
+    }
+
+    /**
+     * Turn a safe grid into the pillar values of its cells.
+     * @param grid the safe grid
+     * @return the pillar value of every cell in row-major order
+     */
+    private static int[] pillarsOf(String[][] grid) {
+        int cols = grid.length == 0 ? 0 : grid[0].length;
+        int[] pillar = new int[grid.length * cols];
+        for (int row = 0; row < grid.length; row++) {
+            for (int col = 0; col < cols; col++) {
+                pillar[row * cols + col] = parseCell(grid[row][col]);
+            }
+        }
+        return pillar;
+    }
+
+    /**
+     * Turn one cell of a safe file into its pillar value.
+     * @param cell the cell as it appears in the file
+     * @return NONE for a non pillar cell, ANY for an 'X' pillar, or the
+     * number of lasers the pillar needs
+     * @throws IllegalArgumentException if the cell is none of these, or a
+     * pillar number outside 0 to 4
+     */
+    private static int parseCell(String cell) {
+        if (cell.equals(SafeConfig.EMPTY) || cell.equals(SafeConfig.LASER)
+                || cell.equals(SafeConfig.BEAM)) {
+            return NONE;
+        } else if (cell.equals(SafeConfig.ANYNUM)) {
+            return ANY;
+        }
+        int value = Integer.parseInt(cell);
+        if (value < 0 || value > 4) {
+            throw new IllegalArgumentException("pillar number out of range: " + cell);
+        }
+        return value;
+    }
+
+    /**
+     * Getter function. return the number of rows.
+     * @return the number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Getter function. return the number of columns.
+     * @return the number of columns
+     */
+    public int getCols() {
+        return cols;
+    }
+
+    /**
+     * Getter function. return the number of cells.
+     * @return rows * cols
+     */
+    public int getCellCount() {
+        return rows * cols;
+    }
+
+    /**
+     * Is the cell a pillar?
+     * @param cell the cell number
+     * @return true if the cell is a pillar, numbered or not
+     */
+    public boolean isPillar(int cell) {
+        return pillar[cell] != NONE;
+    }
+
+    /**
+     * Getter function. return the pillar value of a cell.
+     * @param cell the cell number
+     * @return NONE, ANY, or the number of lasers the pillar needs
+     */
+    public int getPillar(int cell) {
+        return pillar[cell];
+    }
+
+    /**
+     * Getter function. return the row segment of a cell.
+     * @param cell the cell number
+     * @return the segment number, or -1 for a pillar
+     */
+    public int getRowSegment(int cell) {
+        return rowSeg[cell];
+    }
+
+    /**
+     * Getter function. return the column segment of a cell.
+     * @param cell the cell number
+     * @return the segment number, or -1 for a pillar
+     */
+    public int getColSegment(int cell) {
+        return colSeg[cell];
+    }
+
+    /**
+     * Getter function. return the number of segments, rows and columns together.
+     * @return the number of segments
+     */
+    public int getSegmentCount() {
+        return segLine.length;
+    }
+
+    /**
+     * Is the segment part of a row?
+     * @param seg the segment number
+     * @return true for a row segment, false for a column segment
+     */
+    public boolean isRowSegment(int seg) {
+        return seg < rowSegments;
+    }
+
+    /**
+     * Getter function. return the row of a row segment, or the column of a
+     * column segment.
+     * @param seg the segment number
+     * @return the row or column the segment lies in
+     */
+    public int getSegmentLine(int seg) {
+        return segLine[seg];
+    }
+
+    /**
+     * Getter function. return the first column of a row segment, or the
+     * first row of a column segment.
+     * @param seg the segment number
+     * @return the first position, inclusive
+     */
+    public int getSegmentFrom(int seg) {
+        return segFrom[seg];
+    }
+
+    /**
+     * Getter function. return the column after the last cell of a row
+     * segment, or the row after the last cell of a column segment.
+     * @param seg the segment number
+     * @return the last position, exclusive
+     */
+    public int getSegmentTo(int seg) {
+        return segTo[seg];
+    }
+
+    /**
+     * Getter function. return the cell at a position of a segment.
+     * @param seg the segment number
+     * @param pos a position between getSegmentFrom and getSegmentTo
+     * @return the cell number
+     */
+    public int getSegmentCell(int seg, int pos) {
+        if (seg < rowSegments) {
+            return segLine[seg] * cols + pos;
+        }
+        return pos * cols + segLine[seg];
+    }
+
+    /**
+     * Fill in the orthogonal neighbours of a cell.
+     * @param cell the cell number
+     * @param out an array of at least four entries
+     * @return how many neighbours were written to out
+     */
+    public int getNeighbors(int cell, int[] out) {
+        int row = cell / cols;
+        int col = cell % cols;
+        int n = 0;
+        if (row > 0) {
+            out[n++] = cell - cols;
+        }
+        if (row < rows - 1) {
+            out[n++] = cell + cols;
+        }
+        if (col > 0) {
+            out[n++] = cell - 1;
+        }
+        if (col < cols - 1) {
+            out[n++] = cell + 1;
+        }
+        return n;
+    }
+
+    /**
+     * Build the safe grid that shows a set of lasers, with their beams.
+     * @param lasers which cells hold a laser
+     * @return the safe grid
+     */
+    public String[][] toGrid(boolean[] lasers) {
+        boolean[] lit = new boolean[segLine.length];
+        for (int cell = 0; cell < lasers.length; cell++) {
+            if (lasers[cell]) {
+                lit[rowSeg[cell]] = true;
+                lit[colSeg[cell]] = true;
+            }
+        }
+        String[][] grid = new String[rows][cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int cell = row * cols + col;
+                if (pillar[cell] == ANY) {
+                    grid[row][col] = SafeConfig.ANYNUM;
+                } else if (pillar[cell] != NONE) {
+                    grid[row][col] = String.valueOf(pillar[cell]);
+                } else if (lasers[cell]) {
+                    grid[row][col] = SafeConfig.LASER;
+                } else if (lit[rowSeg[cell]] || lit[colSeg[cell]]) {
+                    grid[row][col] = SafeConfig.BEAM;
+                } else {
+                    grid[row][col] = SafeConfig.EMPTY;
+                }
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Lay out a safe grid as text, one row per line with the cells
+     * separated by spaces, the way safe files are written.
+     * @param grid the safe grid
+     * @return the grid as text
+     */
+    public static String format(String[][] grid) {
+        StringBuilder result = new StringBuilder();
+        for (String[] row : grid) {
+            for (int col = 0; col < row.length; col++) {
+                result.append(row[col]);
+                result.append(col == row.length - 1 ? "\n" : " ");
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Is a set of lasers a solution of the safe?  Every cell must be lit,
+     * no laser may shine on another, and every numbered pillar must have
+     * exactly its number of lasers next to it.
+     * @param lasers which cells hold a laser
+     * @return true if the lasers solve the safe
+     */
+    public boolean isSolution(boolean[] lasers) {
+        int[] count = new int[segLine.length];
+        for (int cell = 0; cell < lasers.length; cell++) {
+            if (lasers[cell]) {
+                if (pillar[cell] != NONE) {
+                    return false;
+                }
+                count[rowSeg[cell]]++;
+                count[colSeg[cell]]++;
+            }
+        }
+        for (int seg = 0; seg < count.length; seg++) {
+            if (count[seg] > 1) {
+                return false;
+            }
+        }
+        int[] around = new int[4];
+        for (int cell = 0; cell < lasers.length; cell++) {
+            if (pillar[cell] == NONE) {
+                if (count[rowSeg[cell]] == 0 && count[colSeg[cell]] == 0) {
+                    return false;
+                }
+            } else if (pillar[cell] != ANY) {
+                int n = getNeighbors(cell, around);
+                int numLasers = 0;
+                for (int i = 0; i < n; i++) {
+                    if (lasers[around[i]]) {
+                        numLasers++;
+                    }
+                }
+                if (numLasers != pillar[cell]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
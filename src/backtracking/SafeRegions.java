@@ -0,0 +1,301 @@
+package backtracking;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+/**
+ * Splits a safe into regions that can be solved on their own.  Two cells
+ * are in the same region when they share a row or column segment, or
+ * are next to the same numbered pillar; a laser in one region never
+ * lights a cell of another or counts for another's pillar.  So a safe
+ * whose pillars wall it into rooms costs the sum of the rooms to solve
+ * and not their product.
+ *
+ * Every region becomes a safe of its own: the smallest rectangle that
+ * holds its cells and its numbered pillars, with every other cell in it
+ * turned into an X pillar.  That does not cut any of the region's
+ * segments, since they only hold cells of the region.  The regions are
+ * solved in parallel with a SafeBoard that propagates and branches on
+ * the most constrained cell, and their lasers are put together into the
+ * solution of the whole safe.
+ */
+public class SafeRegions {
+    private final SafePuzzle puzzle;
+    private final List<SafePuzzle> regions;
+    private final List<int[]> cells;
+    private final boolean feasible;
+    private final LongAdder nodes;
+
+    /**
+     * constructor. read a file and split its safe into regions.
+     * @param filename file name
+     * @throws FileNotFoundException if file does not exist
+     */
+    public SafeRegions(String filename) throws FileNotFoundException {
+        this(new SafePuzzle(filename));
+    }
+
+    /**
+     * constructor. split a safe into regions.
+     * @param puzzle the layout of the safe
+     */
+    public SafeRegions(SafePuzzle puzzle) {
+        this.puzzle = puzzle;
+        this.regions = new ArrayList<>();
+        this.cells = new ArrayList<>();
+        this.nodes = new LongAdder();
+        int count = puzzle.getCellCount();
+
+        // join the cells of every segment, and the cells around every
+        // numbered pillar
+        int[] parent = new int[count];
+        for (int cell = 0; cell < count; cell++) {
+            parent[cell] = cell;
+        }
+        for (int seg = 0; seg < puzzle.getSegmentCount(); seg++) {
+            int first = puzzle.getSegmentCell(seg, puzzle.getSegmentFrom(seg));
+            for (int pos = puzzle.getSegmentFrom(seg) + 1; pos < puzzle.getSegmentTo(seg); pos++) {
+                union(parent, first, puzzle.getSegmentCell(seg, pos));
+            }
+        }
+        int[] around = new int[4];
+        boolean ok = true;
+        for (int cell = 0; cell < count; cell++) {
+            if (puzzle.getPillar(cell) < 0) {
+                continue;
+            }
+            int n = puzzle.getNeighbors(cell, around);
+            int open = 0;
+            for (int i = 0; i < n; i++) {
+                if (!puzzle.isPillar(around[i])) {
+                    union(parent, cell, around[i]);
+                    open++;
+                }
+            }
+            ok &= puzzle.getPillar(cell) <= open;
+        }
+        this.feasible = ok;
+
+        // collect the regions, leaving out X pillars and numbered pillars
+        // with no cell around them
+        List<List<Integer>> members = new ArrayList<>();
+        int[] number = new int[count];
+        Arrays.fill(number, -1);
+        for (int cell = 0; cell < count; cell++) {
+            if (puzzle.getPillar(cell) == SafePuzzle.ANY
+                    || (puzzle.isPillar(cell) && !hasOpenNeighbor(cell, around))) {
+                continue;
+            }
+            int root = find(parent, cell);
+            if (number[root] == -1) {
+                number[root] = members.size();
+                members.add(new ArrayList<>());
+            }
+            members.get(number[root]).add(cell);
+        }
+        for (List<Integer> list : members) {
+            int[] part = new int[list.size()];
+            for (int i = 0; i < part.length; i++) {
+                part[i] = list.get(i);
+            }
+            this.cells.add(part);
+            this.regions.add(crop(part));
+        }
+    }
+
+    /**
+     * Getter function. return the number of regions.
+     * @return the number of regions with at least one cell
+     */
+    public int getRegionCount() {
+        return regions.size();
+    }
+
+    /**
+     * Getter function. return the safe of one region.
+     * @param i the region number
+     * @return the layout of the region's safe
+     */
+    public SafePuzzle getRegion(int i) {
+        return regions.get(i);
+    }
+
+    /**
+     * Getter function. return how many nodes the region searches have
+     * expanded, over all threads.
+     * @return the number of nodes expanded
+     */
+    public long getNodeCount() {
+        return nodes.sum();
+    }
+
+    /**
+     * Solve every region, in parallel, and put the lasers together.  As
+     * soon as one region turns out to have no solution, the regions that
+     * have not started yet are skipped.
+     * @return the solved grid of the whole safe, or empty if there is no
+     * solution
+     */
+    public Optional<String[][]> solve() {
+        if (!feasible) {
+            return Optional.empty();
+        }
+        AtomicBoolean failed = new AtomicBoolean();
+        boolean[] lasers = new boolean[puzzle.getCellCount()];
+        IntStream.range(0, regions.size()).parallel().forEach(i -> {
+            if (failed.get()) {
+                return;
+            }
+            SafeBoard board = board(i);
+            IterativeBacktracker bt = new IterativeBacktracker(false);
+            boolean solved = board != null && bt.solveInPlace(board);
+            nodes.add(bt.getNodeCount());
+            if (!solved) {
+                failed.set(true);
+                return;
+            }
+            place(i, board, lasers);
+        });
+        return failed.get() ? Optional.empty() : Optional.of(puzzle.toGrid(lasers));
+    }
+
+    /**
+     * Count the solutions of the safe, the product of the counts of its
+     * regions, which are counted in parallel.  A count that does not fit
+     * in a long is given as Long.MAX_VALUE.
+     * @return the number of solutions
+     */
+    public long countSolutions() {
+        if (!feasible) {
+            return 0;
+        }
+        long[] counts = IntStream.range(0, regions.size()).parallel()
+                .mapToLong(i -> {
+                    SafeBoard board = board(i);
+                    IterativeBacktracker bt = new IterativeBacktracker(false);
+                    long n = board == null ? 0 : bt.countSolutions(board, Long.MAX_VALUE);
+                    nodes.add(bt.getNodeCount());
+                    return n;
+                }).toArray();
+        long total = 1;
+        for (long n : counts) {
+            if (n == 0) {
+                return 0;
+            }
+            total = total > Long.MAX_VALUE / n ? Long.MAX_VALUE : total * n;
+        }
+        return total;
+    }
+
+    /**
+     * Set up the board of a region, with its forced cells fixed.
+     * @param i the region number
+     * @return the board, or null if the region has no solution
+     */
+    private SafeBoard board(int i) {
+        SafeBoard board = new SafeBoard(regions.get(i));
+        board.setPropagation(true);
+        board.setCellOrder(SafeBoard.CellOrder.MOST_CONSTRAINED);
+        return board.presolve() == null ? null : board;
+    }
+
+    /**
+     * Copy the lasers of a solved region into the whole safe.  Every
+     * region writes its own cells only.
+     * @param i the region number
+     * @param board the solved board of the region
+     * @param lasers the lasers of the whole safe
+     */
+    private void place(int i, SafeBoard board, boolean[] lasers) {
+        int[] box = bounds(cells.get(i));
+        int width = box[3] - box[1] + 1;
+        int cols = puzzle.getCols();
+        for (int cell : cells.get(i)) {
+            int local = (cell / cols - box[0]) * width + cell % cols - box[1];
+            lasers[cell] = board.getState(local) == SafeBoard.LASER;
+        }
+    }
+
+    /**
+     * Build the safe of a region.
+     * @param part the cells and numbered pillars of the region
+     * @return the layout of the region's safe
+     */
+    private SafePuzzle crop(int[] part) {
+        int[] box = bounds(part);
+        int cols = puzzle.getCols();
+        String[][] grid = new String[box[2] - box[0] + 1][box[3] - box[1] + 1];
+        for (String[] row : grid) {
+            Arrays.fill(row, SafeConfig.ANYNUM);
+        }
+        for (int cell : part) {
+            int value = puzzle.getPillar(cell);
+            grid[cell / cols - box[0]][cell % cols - box[1]] =
+                    value == SafePuzzle.NONE ? SafeConfig.EMPTY : String.valueOf(value);
+        }
+        return new SafePuzzle(grid);
+    }
+
+    /**
+     * The smallest rectangle that holds a set of cells.
+     * @param part the cells
+     * @return the top row, left column, bottom row and right column
+     */
+    private int[] bounds(int[] part) {
+        int cols = puzzle.getCols();
+        int[] box = { Integer.MAX_VALUE, Integer.MAX_VALUE, -1, -1 };
+        for (int cell : part) {
+            box[0] = Math.min(box[0], cell / cols);
+            box[1] = Math.min(box[1], cell % cols);
+            box[2] = Math.max(box[2], cell / cols);
+            box[3] = Math.max(box[3], cell % cols);
+        }
+        return box;
+    }
+
+    /**
+     * Does a pillar have a neighbour that is not a pillar?
+     * @param cell the cell number of the pillar
+     * @param around room for the neighbours
+     * @return true if one of them can hold a laser
+     */
+    private boolean hasOpenNeighbor(int cell, int[] around) {
+        int n = puzzle.getNeighbors(cell, around);
+        for (int i = 0; i < n; i++) {
+            if (!puzzle.isPillar(around[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Find the representative of a cell's group.
+     * @param parent the parent of every cell
+     * @param cell the cell number
+     * @return the representative
+     */
+    private static int find(int[] parent, int cell) {
+        while (parent[cell] != cell) {
+            parent[cell] = parent[parent[cell]];
+            cell = parent[cell];
+        }
+        return cell;
+    }
+
+    /**
+     * Join the groups of two cells.
+     * @param parent the parent of every cell
+     * @param a a cell number
+     * @param b a cell number
+     */
+    private static void union(int[] parent, int a, int b) {
+        parent[find(parent, a)] = find(parent, b);
+    }
+}
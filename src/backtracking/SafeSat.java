@@ -0,0 +1,223 @@
+package backtracking;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Optional;
+
+/**
+ * Solves a safe by writing it as a formula in CNF and handing that to a
+ * CdclSolver.  Every empty cell gets a variable that is true when the
+ * cell holds a laser, and the rules become clauses:
+ *
+ * - every empty cell is lit: one of the cells of its row or column
+ *   segment holds a laser.
+ * - every row and column segment holds at most one laser.  Short
+ *   segments get a clause for every pair of cells; longer ones a chain
+ *   of extra variables that counts the lasers seen so far, which keeps
+ *   the formula linear in the size of the safe.
+ * - every numbered pillar has exactly its number of lasers next to it.
+ *   A pillar has at most four neighbours, so every set of neighbours one
+ *   too big to be all lasers, or one too big to be all empty, gets a
+ *   clause.
+ */
+public class SafeSat {
+    /** segments longer than this get the counting chain */
+    private final static int PAIRWISE_LIMIT = 5;
+
+    private final SafePuzzle puzzle;
+    private final ArrayList<int[]> clauses;
+    private int vars;
+    private CdclSolver solver;
+
+    /**
+     * constructor. read a file and build the formula of its safe.
+     * @param filename file name
+     * @throws FileNotFoundException if file does not exist
+     */
+    public SafeSat(String filename) throws FileNotFoundException {
+        this(new SafePuzzle(filename));
+    }
+
+    /**
+     * constructor. build the formula of a safe.
+     * @param puzzle the layout of the safe
+     */
+    public SafeSat(SafePuzzle puzzle) {
+        this.puzzle = puzzle;
+        this.clauses = new ArrayList<>();
+        // variables 1 .. cells belong to the cells; the ones of pillars
+        // stay out of every clause
+        this.vars = puzzle.getCellCount();
+
+        for (int cell = 0; cell < puzzle.getCellCount(); cell++) {
+            if (!puzzle.isPillar(cell)) {
+                encodeCover(cell);
+            }
+        }
+        for (int seg = 0; seg < puzzle.getSegmentCount(); seg++) {
+            encodeSegment(seg);
+        }
+        int[] around = new int[4];
+        for (int cell = 0; cell < puzzle.getCellCount(); cell++) {
+            if (puzzle.getPillar(cell) >= 0) {
+                encodePillar(cell, around);
+            }
+        }
+    }
+
+    /**
+     * Getter function. return the layout of the safe.
+     * @return the puzzle being solved
+     */
+    public SafePuzzle getPuzzle() {
+        return puzzle;
+    }
+
+    /**
+     * Getter function. return the number of variables of the formula.
+     * @return the number of variables
+     */
+    public int getVariableCount() {
+        return vars;
+    }
+
+    /**
+     * Getter function. return the number of clauses of the formula.
+     * @return the number of clauses
+     */
+    public int getClauseCount() {
+        return clauses.size();
+    }
+
+    /**
+     * Getter function. return the solver of the last solve() call, which
+     * knows how much work it did.
+     * @return the solver, or null before solve() is called
+     */
+    public CdclSolver getSolver() {
+        return solver;
+    }
+
+    /**
+     * Search for a solution of the safe.
+     * @return the solved grid, with its beams, or empty if there is no
+     * solution
+     */
+    public Optional<String[][]> solve() {
+        this.solver = new CdclSolver(vars);
+        for (int[] clause : clauses) {
+            if (!solver.addClause(clause)) {
+                return Optional.empty();
+            }
+        }
+        if (!solver.solve()) {
+            return Optional.empty();
+        }
+        boolean[] lasers = new boolean[puzzle.getCellCount()];
+        for (int cell = 0; cell < lasers.length; cell++) {
+            lasers[cell] = !puzzle.isPillar(cell) && solver.getValue(cell + 1);
+        }
+        return Optional.of(puzzle.toGrid(lasers));
+    }
+
+    /**
+     * Add the clause that lights a cell.
+     * @param cell the cell number
+     */
+    private void encodeCover(int cell) {
+        int rowSeg = puzzle.getRowSegment(cell);
+        int colSeg = puzzle.getColSegment(cell);
+        int rowLen = puzzle.getSegmentTo(rowSeg) - puzzle.getSegmentFrom(rowSeg);
+        int colLen = puzzle.getSegmentTo(colSeg) - puzzle.getSegmentFrom(colSeg);
+        int[] clause = new int[rowLen + colLen - 1];
+        int n = 0;
+        for (int pos = puzzle.getSegmentFrom(rowSeg); pos < puzzle.getSegmentTo(rowSeg); pos++) {
+            clause[n++] = puzzle.getSegmentCell(rowSeg, pos) + 1;
+        }
+        for (int pos = puzzle.getSegmentFrom(colSeg); pos < puzzle.getSegmentTo(colSeg); pos++) {
+            int other = puzzle.getSegmentCell(colSeg, pos);
+            if (other != cell) {
+                clause[n++] = other + 1;
+            }
+        }
+        clauses.add(clause);
+    }
+
+    /**
+     * Add the clauses that allow at most one laser in a segment.
+     * @param seg the segment number
+     */
+    private void encodeSegment(int seg) {
+        int from = puzzle.getSegmentFrom(seg);
+        int to = puzzle.getSegmentTo(seg);
+        if (to - from <= PAIRWISE_LIMIT) {
+            for (int i = from; i < to; i++) {
+                for (int j = i + 1; j < to; j++) {
+                    clauses.add(new int[] { -(puzzle.getSegmentCell(seg, i) + 1),
+                            -(puzzle.getSegmentCell(seg, j) + 1) });
+                }
+            }
+            return;
+        }
+        // s(i) is true when one of the first i + 1 cells holds a laser
+        int prev = 0;
+        for (int i = from; i < to; i++) {
+            int x = puzzle.getSegmentCell(seg, i) + 1;
+            if (prev != 0) {
+                clauses.add(new int[] { -x, -prev });
+            }
+            if (i < to - 1) {
+                int s = ++vars;
+                clauses.add(new int[] { -x, s });
+                if (prev != 0) {
+                    clauses.add(new int[] { -prev, s });
+                }
+                prev = s;
+            }
+        }
+    }
+
+    /**
+     * Add the clauses that give a pillar exactly its number of lasers.
+     * @param cell the cell number of the pillar
+     * @param around room for the neighbours of the pillar
+     */
+    private void encodePillar(int cell, int[] around) {
+        int value = puzzle.getPillar(cell);
+        int k = 0;
+        int n = puzzle.getNeighbors(cell, around);
+        for (int i = 0; i < n; i++) {
+            if (!puzzle.isPillar(around[i])) {
+                around[k++] = around[i];
+            }
+        }
+        if (value > k) {
+            clauses.add(new int[0]);
+            return;
+        }
+        // every subset of value + 1 neighbours has an empty cell, and
+        // every subset of k - value + 1 neighbours has a laser
+        for (int subset = 1; subset < 1 << k; subset++) {
+            int size = Integer.bitCount(subset);
+            if (size != value + 1 && size != k - value + 1) {
+                continue;
+            }
+            int[] lasers = new int[size];
+            int[] empties = new int[size];
+            int m = 0;
+            for (int i = 0; i < k; i++) {
+                if ((subset & 1 << i) != 0) {
+                    lasers[m] = around[i] + 1;
+                    empties[m] = -(around[i] + 1);
+                    m++;
+                }
+            }
+            if (size == value + 1) {
+                clauses.add(empties);
+            }
+            if (size == k - value + 1) {
+                clauses.add(lasers);
+            }
+        }
+    }
+}
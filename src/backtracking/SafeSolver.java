@@ -7,29 +7,170 @@ import java.util.Optional;
  * Thie is the main class for a safe solver.  It runs the backtracking
  * algorithm and displays the solution, if one exists.
  *
+ * Unless another engine is asked for, the safe is solved in place on a
+ * SafeBoard that propagates and branches on the most constrained cell,
+ * as the batch solver and the GUI do.  The in-place search keeps two
+ * ints per level, so it goes as deep as any safe needs.  The strings, bits and parallel engines keep a copy
+ * of the grid per level instead, which runs out of memory on big safes,
+ * such as 200x200.
+ *
+ * The shared SolutionCache is looked in before any engine runs, and a
+ * solution an engine finds is kept there.  Run with -Dlasers.cache=off
+ * to time the engines on safes that were solved before.
+ *
  * @author Sean Strout @ RIT CS
  */
 public class SafeSolver {
+    /** how many levels of splits the parallel engine turns into tasks */
+    private final static int PARALLEL_CUTOFF = 12;
+    /** how many dead ends the table engine remembers */
+    private final static int TABLE_CAPACITY = 1 << 20;
+
     public static void main(String[] args) throws FileNotFoundException {
-        if (args.length != 2) {
-            System.out.println("Usage: java SafeSolver safe.in debug");
+        if (args.length != 2 && args.length != 3) {
+            System.out.println("Usage: java SafeSolver safe.in debug [mcv|strings|bits|parallel|inplace|table|propagate|dlx|sat|profile|regions]");
+            System.out.println("strings, bits and parallel copy the grid at every level; use another engine on big safes");
         } else {
-            // construct the initial configuration from the file
-            Configuration init = new SafeConfig(args[0]);
+            // look the safe up before any engine is built, unless the
+            // cache is turned off
+            double lookup = System.currentTimeMillis();
+            SolutionCache cache = SolutionCache.getDefault();
+            SafePuzzle puzzle = cache == null ? null : new SafePuzzle(args[0]);
+            Optional<boolean[]> cached = cache == null ? Optional.empty() : cache.get(puzzle);
+            if (cached.isPresent()) {
+                System.out.println("Elapsed time: " +
+                        (System.currentTimeMillis() - lookup)/1000.0 + " seconds.");
+                System.out.println("Solution found in the cache " + cache.getDirectory());
+                System.out.println("Solution cache " + cache);
+                System.out.println("Solution:\n" + SafePuzzle.format(puzzle.toGrid(cached.get())));
+                return;
+            }
+
+            // construct the initial configuration from the file, with the
+            // propagating in-place engine unless another one is asked for
+            String engine = args.length == 3 ? args[2] : "mcv";
+            Configuration init = null;
+            SafeBoard board = null;
+            SafeExactCover cover = null;
+            SafeSat sat = null;
+            SafeRegions regions = null;
+            if (engine.equals("bits")) {
+                init = new BitSafeConfig(args[0]);
+            } else if (engine.equals("inplace")) {
+                board = new SafeBoard(args[0]);
+            } else if (engine.equals("table")) {
+                board = new SafeBoard(args[0]);
+                board.setStateHashing(true);
+            } else if (engine.equals("propagate") || engine.equals("mcv") || engine.equals("profile")) {
+                board = new SafeBoard(args[0]);
+                board.setPropagation(true);
+                if (!engine.equals("propagate")) {
+                    board.setCellOrder(SafeBoard.CellOrder.MOST_CONSTRAINED);
+                }
+            } else if (engine.equals("dlx")) {
+                cover = new SafeExactCover(args[0]);
+            } else if (engine.equals("sat")) {
+                sat = new SafeSat(args[0]);
+            } else if (engine.equals("regions")) {
+                regions = new SafeRegions(args[0]);
+                System.out.println("Regions: " + regions.getRegionCount());
+            } else {
+                // the parallel engine splits this search too: the bit grid
+                // has none of its pillar and cover checks
+                init = new SafeConfig(args[0]);
+            }
 
             // create the backtracker with the debug flag
             boolean debug = args[1].equals("true");
-            Backtracker bt = new Backtracker(debug);
+            IterativeBacktracker bt = new IterativeBacktracker(debug);
+            if (engine.equals("table")) {
+                bt.setTranspositionTable(new TranspositionTable(
+                        TABLE_CAPACITY, TranspositionTable.Eviction.LRU));
+            }
 
             // start the clock
             double start = System.currentTimeMillis();
 
+            // count the solutions over the profile; the board below then
+            // shows one of them
+            if (engine.equals("profile")) {
+                SafeProfileSolver dp = new SafeProfileSolver(board.getPuzzle());
+                long count = dp.countSolutions();
+                System.out.println("Solutions: " + (count == Long.MAX_VALUE ? "too many to count" : count)
+                        + (dp.fitsProfile() ? ", profile states: " + dp.getStateCount()
+                        : ", searched since the profile is too wide"));
+            }
+
+            // fix the forced cells before searching, if asked to
+            SafePropagator pre = null;
+            if (engine.equals("propagate") || engine.equals("mcv") || engine.equals("profile")) {
+                pre = board.presolve();
+                if (pre != null) {
+                    System.out.println("Cells fixed before the search: " + pre.getFixedCount());
+                }
+            }
+
             // attempt to solve the puzzle
-            Optional<Configuration> sol = bt.solve(init);
+            Optional<?> sol;
+            Optional<String[][]> grid;
+            long nodes;
+            if (board != null) {
+                sol = bt.solveInPlace(board) ? Optional.of(board) : Optional.empty();
+                grid = sol.isPresent() ? Optional.of(board.getGrid()) : Optional.empty();
+                nodes = bt.getNodeCount();
+            } else if (cover != null) {
+                grid = cover.solve();
+                sol = grid.map(SafePuzzle::format);
+                nodes = cover.getNodeCount();
+            } else if (sat != null) {
+                grid = sat.solve();
+                sol = grid.map(SafePuzzle::format);
+                nodes = sat.getSolver().getDecisionCount();
+            } else if (regions != null) {
+                grid = regions.solve();
+                sol = grid.map(SafePuzzle::format);
+                nodes = regions.getNodeCount();
+            } else if (engine.equals("parallel")) {
+                ParallelBacktracker pbt = new ParallelBacktracker(
+                        Runtime.getRuntime().availableProcessors(), PARALLEL_CUTOFF);
+                Optional<Configuration> goal = pbt.solve(init);
+                sol = goal;
+                grid = goal.map(Configuration::getGrid);
+                nodes = pbt.getNodeCount();
+                pbt.shutdown();
+            } else {
+                Optional<Configuration> goal = bt.solve(init);
+                sol = goal;
+                grid = goal.map(Configuration::getGrid);
+                nodes = bt.getNodeCount();
+            }
+            if (cache != null) {
+                grid.ifPresent(solved -> cache.put(puzzle, SolutionCache.lasersOf(solved)));
+            }
 
             // compute the elapsed time
             System.out.println("Elapsed time: " +
                     (System.currentTimeMillis() - start)/1000.0 + " seconds.");
+            if (board != null || (init != null && !engine.equals("parallel"))) {
+                // the backtracker counts more than its nodes
+                System.out.println(bt.getMetrics());
+            } else {
+                System.out.println("Nodes expanded: " + nodes);
+            }
+            if (pre != null) {
+                System.out.println("Cells fixed in total: " + pre.getFixedCount());
+            }
+            if (bt.getTranspositionTable() != null) {
+                System.out.println("Transposition table " + bt.getTranspositionTable());
+            }
+            if (cache != null) {
+                System.out.println("Solution cache " + cache);
+            }
+            if (sat != null) {
+                System.out.println("Conflicts: " + sat.getSolver().getConflictCount()
+                        + ", learned clauses: " + sat.getSolver().getLearnedCount()
+                        + ", restarts: " + sat.getSolver().getRestartCount());
+            }
 
             // indicate whether there was a solution, or not
             if (sol.isPresent()) {
@@ -20,7 +20,7 @@ public class SafeSolverPath {
 
             // create the backtracker with the debug flag
             boolean debug = args[1].equals("true");
-            Backtracker bt = new Backtracker(debug);
+            IterativeBacktracker bt = new IterativeBacktracker(debug);
 
             // start the clock
             double start = System.currentTimeMillis();
@@ -33,7 +33,7 @@ public class SafeSolverPath {
                     (System.currentTimeMillis() - start)/1000.0 + " seconds.");
 
             // indicate whether there was a solution, or not
-            if (path != null) {
+            if (!path.isEmpty()) {
                 int step = 0;
                 // loop through the configs from start to end and display them
                 for (Configuration config : path) {
@@ -0,0 +1,285 @@
+package backtracking;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The canonical form of a safe.  Turning a safe a quarter turn, or
+ * mirroring it, makes another safe whose solutions are those of the
+ * first, turned the same way.  The eight ways to turn and mirror a grid
+ * give up to eight safes that are one puzzle; the canonical form is the
+ * same for all of them.
+ *
+ * The canonical form is the turned grid that comes first when the grids
+ * are compared by their size and then by their pillars in row-major
+ * order, which takes one pass over the cells per way.  Its hash, the
+ * SHA-256 of the canonical grid as a safe file shows it, is the same for
+ * all eight safes and for no other, so safes are told apart without
+ * being solved.  The transform that turns the safe into its canonical
+ * form is kept, so a solution of one is turned into a solution of the
+ * other.
+ */
+public class SafeSymmetry {
+    /**
+     * The eight ways to turn and mirror a grid.  The quarter turns are
+     * clockwise; a way that turns a quarter, or mirrors along a diagonal,
+     * swaps the number of rows and columns.
+     */
+    public enum Transform {
+        IDENTITY, ROTATE_90, ROTATE_180, ROTATE_270, MIRROR, FLIP, TRANSPOSE, ANTI_TRANSPOSE;
+
+        /**
+         * Does this way swap the rows and the columns?
+         * @return true for the quarter turns and the diagonal mirrors
+         */
+        public boolean swapsSides() {
+            return this == ROTATE_90 || this == ROTATE_270 || this == TRANSPOSE || this == ANTI_TRANSPOSE;
+        }
+
+        /**
+         * The way that undoes this one.
+         * @return the inverse transform
+         */
+        public Transform inverse() {
+            return this == ROTATE_90 ? ROTATE_270 : this == ROTATE_270 ? ROTATE_90 : this;
+        }
+
+        /**
+         * Where a cell goes.
+         * @param row the row of the cell
+         * @param col the column of the cell
+         * @param rows the number of rows of the grid
+         * @param cols the number of columns of the grid
+         * @return the number of the cell in the turned grid
+         */
+        public int map(int row, int col, int rows, int cols) {
+            int newCols = swapsSides() ? rows : cols;
+            switch (this) {
+                case ROTATE_90:
+                    return col * newCols + (rows - 1 - row);
+                case ROTATE_180:
+                    return (rows - 1 - row) * newCols + (cols - 1 - col);
+                case ROTATE_270:
+                    return (cols - 1 - col) * newCols + row;
+                case MIRROR:
+                    return row * newCols + (cols - 1 - col);
+                case FLIP:
+                    return (rows - 1 - row) * newCols + col;
+                case TRANSPOSE:
+                    return col * newCols + row;
+                case ANTI_TRANSPOSE:
+                    return (cols - 1 - col) * newCols + (rows - 1 - row);
+                default:
+                    return row * newCols + col;
+            }
+        }
+
+        /**
+         * Turn a grid.
+         * @param grid the grid
+         * @return the turned grid
+         */
+        public String[][] apply(String[][] grid) {
+            int rows = grid.length;
+            int cols = rows == 0 ? 0 : grid[0].length;
+            int newCols = swapsSides() ? rows : cols;
+            String[][] result = new String[swapsSides() ? cols : rows][newCols];
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < cols; col++) {
+                    int cell = map(row, col, rows, cols);
+                    result[cell / newCols][cell % newCols] = grid[row][col];
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Turn a set of cells, such as the lasers of a solution.
+         * @param cells one entry per cell of the grid
+         * @param rows the number of rows of the grid
+         * @param cols the number of columns of the grid
+         * @return one entry per cell of the turned grid
+         */
+        public boolean[] apply(boolean[] cells, int rows, int cols) {
+            boolean[] result = new boolean[cells.length];
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < cols; col++) {
+                    result[map(row, col, rows, cols)] = cells[row * cols + col];
+                }
+            }
+            return result;
+        }
+    }
+
+    private final SafePuzzle puzzle;
+    private final Transform transform;
+    private final SafePuzzle canonical;
+    private final String key;
+
+    /**
+     * constructor. find the canonical form of a safe.
+     * @param puzzle the layout of the safe
+     */
+    public SafeSymmetry(SafePuzzle puzzle) {
+        this.puzzle = puzzle;
+        int rows = puzzle.getRows();
+        int cols = puzzle.getCols();
+        Transform best = Transform.IDENTITY;
+        int[] bestCodes = codes(puzzle, best);
+        for (Transform way : Transform.values()) {
+            int[] codes = codes(puzzle, way);
+            if (compare(codes, bestCodes) < 0) {
+                best = way;
+                bestCodes = codes;
+            }
+        }
+        this.transform = best;
+        String[][] grid = best.apply(puzzle.toGrid(new boolean[puzzle.getCellCount()]));
+        this.canonical = new SafePuzzle(grid);
+        this.key = hash((best.swapsSides() ? cols : rows) + " " + (best.swapsSides() ? rows : cols)
+                + "\n" + SafePuzzle.format(grid));
+    }
+
+    /**
+     * Getter function. return the layout of the safe.
+     * @return the layout the canonical form was found for
+     */
+    public SafePuzzle getPuzzle() {
+        return puzzle;
+    }
+
+    /**
+     * Getter function. return the way that turns the safe into its
+     * canonical form.
+     * @return the transform
+     */
+    public Transform getTransform() {
+        return transform;
+    }
+
+    /**
+     * Getter function. return the layout of the canonical form.
+     * @return the canonical layout
+     */
+    public SafePuzzle getCanonical() {
+        return canonical;
+    }
+
+    /**
+     * Getter function. return the hash of the canonical form: the SHA-256
+     * of its size and grid, in hex.
+     * @return the hash
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Turn lasers of the safe into lasers of the canonical form.
+     * @param lasers one entry per cell of the safe
+     * @return one entry per cell of the canonical form
+     */
+    public boolean[] toCanonical(boolean[] lasers) {
+        return transform.apply(lasers, puzzle.getRows(), puzzle.getCols());
+    }
+
+    /**
+     * Turn lasers of the canonical form back into lasers of the safe.
+     * @param lasers one entry per cell of the canonical form
+     * @return one entry per cell of the safe
+     */
+    public boolean[] fromCanonical(boolean[] lasers) {
+        return transform.inverse().apply(lasers, canonical.getRows(), canonical.getCols());
+    }
+
+    /**
+     * The size and pillars of a turned safe, in the order they are
+     * compared: rows, columns, and the pillar value of every cell of the
+     * turned grid in row-major order.
+     * @param puzzle the layout of the safe
+     * @param way how to turn it
+     * @return the values
+     */
+    private static int[] codes(SafePuzzle puzzle, Transform way) {
+        int rows = puzzle.getRows();
+        int cols = puzzle.getCols();
+        int[] codes = new int[2 + rows * cols];
+        codes[0] = way.swapsSides() ? cols : rows;
+        codes[1] = way.swapsSides() ? rows : cols;
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                codes[2 + way.map(row, col, rows, cols)] = puzzle.getPillar(row * cols + col);
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Compare the values of two turned safes.
+     * @param a the values of one
+     * @param b the values of the other, as long as a
+     * @return less than 0, 0 or more than 0 as a comes before, with or after b
+     */
+    private static int compare(int[] a, int[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return Integer.compare(a[i], b[i]);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * The SHA-256 of a text, in hex.
+     * @param text the text
+     * @return the hash
+     */
+    private static String hash(String text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(2 * hash.length);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * List the safes in files and directories that are the same puzzle as
+     * one listed before them, turned or mirrored, without solving any.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: java SafeSymmetry safe.in|dir...");
+            return;
+        }
+        List<Path> files = SafeFiles.collect(Arrays.asList(args));
+        Map<String, Path> first = new HashMap<>();
+        int duplicates = 0;
+        for (Path file : files) {
+            SafeSymmetry symmetry = SafeFiles.read(file,
+                    safe -> new SafeSymmetry(new SafePuzzle(safe.toString())), System.out);
+            if (symmetry == null) {
+                continue;
+            }
+            Path same = first.putIfAbsent(symmetry.getKey(), file);
+            if (same != null) {
+                duplicates++;
+                System.out.println(file + ": same as " + same);
+            }
+        }
+        System.out.println("Safes: " + files.size() + ", distinct: " + first.size()
+                + ", duplicates: " + duplicates);
+    }
+}
@@ -0,0 +1,409 @@
+package backtracking;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * The solutions of safes that were solved before, so a safe that comes
+ * back is looked up instead of searched again.  A safe is known by the
+ * hash of its canonical form, see SafeSymmetry, so the same safe is
+ * found whatever file it was read from and whatever lasers the file
+ * shows, and so is every safe that is the same one turned or mirrored.
+ * The solutions are kept for the canonical form and turned back to the
+ * safe that is looked up.
+ *
+ * The solutions are kept in two places:
+ *
+ * - in memory, for the most recently used safes, MEMORY_CAPACITY unless
+ *   set otherwise.
+ * - on disk, one file per safe named by its hash, in the same format as a
+ *   safe file.  A file is written under a temporary name and then moved
+ *   in place, so a process that reads it sees it whole or not at all, and
+ *   several processes can share the directory.  When the files take more
+ *   than their limit, the ones that were used the longest time ago are
+ *   deleted; a file that is found has its time set to now.
+ *
+ * A solution read back is checked against the safe before it is used, so
+ * a file that was damaged is only a miss.  Safes with no solution are not
+ * kept, and a cache that can not be written to only misses more.
+ *
+ * The cache every solver shares is in the directory the lasers.cache
+ * system property names, or .lasers/cache in the home directory; the
+ * property set to "off" turns it off.
+ */
+public class SolutionCache {
+    /** the system property with the directory of the shared cache */
+    public final static String DIR_PROPERTY = "lasers.cache";
+    /** how many solutions are kept in memory, unless set otherwise */
+    public final static int MEMORY_CAPACITY = 256;
+    /** how many bytes the files may take, unless set otherwise */
+    public final static long DISK_BYTES = 64L << 20;
+
+    private final static String SUFFIX = ".sol";
+
+    private final Path dir;
+    private final long maxBytes;
+    private final Map<String, boolean[]> memory;
+    private long diskBytes;
+
+    private final LongAdder memoryHits;
+    private final LongAdder diskHits;
+    private final LongAdder misses;
+    private final LongAdder stores;
+    private final LongAdder evictions;
+
+    /**
+     * constructor. create a cache in a directory, which is created if it
+     * is not there.
+     * @param dir the directory of the files, or null to keep the
+     *            solutions in memory only
+     * @param memoryCapacity how many solutions to keep in memory
+     * @param maxBytes how many bytes the files may take
+     * @throws IOException if the directory can not be created or read
+     */
+    public SolutionCache(Path dir, int memoryCapacity, long maxBytes) throws IOException {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.memory = new LinkedHashMap<String, boolean[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, boolean[]> eldest) {
+                return size() > memoryCapacity;
+            }
+        };
+        this.memoryHits = new LongAdder();
+        this.diskHits = new LongAdder();
+        this.misses = new LongAdder();
+        this.stores = new LongAdder();
+        this.evictions = new LongAdder();
+        if (dir != null) {
+            Files.createDirectories(dir);
+            this.diskBytes = files().stream().mapToLong(CachedFile::getSize).sum();
+        }
+    }
+
+    /**
+     * Getter function. return the cache all solvers of this process share,
+     * made the first time it is asked for.
+     * @return the cache, or null if it is turned off.  A directory that
+     * can not be used leaves the cache in memory only.
+     */
+    public static SolutionCache getDefault() {
+        return Shared.CACHE;
+    }
+
+    /**
+     * The hash a safe is known by in the cache: the hash of its canonical
+     * form.
+     * @param puzzle the layout of the safe
+     * @return the hash
+     */
+    public static String key(SafePuzzle puzzle) {
+        return new SafeSymmetry(puzzle).getKey();
+    }
+
+    /**
+     * Which cells of a solved grid hold a laser.
+     * @param grid the grid, with its lasers
+     * @return one entry per cell, true where there is a laser
+     */
+    public static boolean[] lasersOf(String[][] grid) {
+        int cols = grid.length == 0 ? 0 : grid[0].length;
+        boolean[] lasers = new boolean[grid.length * cols];
+        for (int row = 0; row < grid.length; row++) {
+            for (int col = 0; col < cols; col++) {
+                lasers[row * cols + col] = grid[row][col].equals(SafeConfig.LASER);
+            }
+        }
+        return lasers;
+    }
+
+    /**
+     * Look up the solution of a safe.
+     * @param puzzle the layout of the safe
+     * @return which cells hold a laser in the solution, or empty if the
+     * safe is not in the cache
+     */
+    public Optional<boolean[]> get(SafePuzzle puzzle) {
+        SafeSymmetry symmetry = new SafeSymmetry(puzzle);
+        String key = symmetry.getKey();
+        synchronized (memory) {
+            boolean[] lasers = memory.get(key);
+            if (lasers != null) {
+                memoryHits.increment();
+                return Optional.of(symmetry.fromCanonical(lasers));
+            }
+        }
+        if (dir != null) {
+            Path file = dir.resolve(key + SUFFIX);
+            SafePuzzle canonical = symmetry.getCanonical();
+            try {
+                String[][] grid = SafePuzzle.read(file.toString());
+                boolean[] lasers = lasersOf(grid);
+                if (grid.length == canonical.getRows() && lasers.length == canonical.getCellCount()
+                        && canonical.isSolution(lasers)) {
+                    Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+                    remember(key, lasers);
+                    diskHits.increment();
+                    return Optional.of(symmetry.fromCanonical(lasers));
+                }
+            } catch (FileNotFoundException | NoSuchFileException e) {
+                // not cached, or just evicted by another process
+            } catch (IOException | RuntimeException e) {
+                // a damaged file is a miss; the next put replaces it
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Keep the solution of a safe, in memory and on disk.
+     * @param puzzle the layout of the safe
+     * @param lasers which cells hold a laser in the solution
+     * @throws IllegalArgumentException if the lasers do not solve the safe
+     */
+    public void put(SafePuzzle puzzle, boolean[] lasers) {
+        if (!puzzle.isSolution(lasers)) {
+            throw new IllegalArgumentException("not a solution of the safe");
+        }
+        SafeSymmetry symmetry = new SafeSymmetry(puzzle);
+        String key = symmetry.getKey();
+        SafePuzzle canonical = symmetry.getCanonical();
+        boolean[] turned = symmetry.toCanonical(lasers);
+        remember(key, turned);
+        stores.increment();
+        if (dir != null) {
+            byte[] text = (canonical.getRows() + " " + canonical.getCols() + "\n"
+                    + SafePuzzle.format(canonical.toGrid(turned))).getBytes(StandardCharsets.UTF_8);
+            Path temp = null;
+            try {
+                temp = Files.createTempFile(dir, ".cache", ".tmp");
+                Files.write(temp, text);
+                Files.move(temp, dir.resolve(key + SUFFIX), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                grow(text.length);
+            } catch (IOException e) {
+                // the solution stays in memory only
+                try {
+                    if (temp != null) {
+                        Files.deleteIfExists(temp);
+                    }
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Look up the solution of a safe, and search for it only if it is not
+     * in the cache.  A solution that is found is kept.
+     * @param puzzle the layout of the safe
+     * @param search the search, for a safe that is not in the cache
+     * @return which cells hold a laser in the solution, or empty if there
+     * is none
+     */
+    public Optional<boolean[]> solve(SafePuzzle puzzle, Function<SafePuzzle, Optional<boolean[]>> search) {
+        Optional<boolean[]> lasers = get(puzzle);
+        if (!lasers.isPresent()) {
+            lasers = search.apply(puzzle);
+            lasers.ifPresent(found -> put(puzzle, found));
+        }
+        return lasers;
+    }
+
+    /**
+     * Getter function. return the directory of the files.
+     * @return the directory, or null if the solutions are in memory only
+     */
+    public Path getDirectory() {
+        return dir;
+    }
+
+    /**
+     * Getter function. return how many lookups were found in memory.
+     * @return the number of hits
+     */
+    public long getMemoryHits() {
+        return memoryHits.sum();
+    }
+
+    /**
+     * Getter function. return how many lookups were found on disk.
+     * @return the number of hits
+     */
+    public long getDiskHits() {
+        return diskHits.sum();
+    }
+
+    /**
+     * Getter function. return how many lookups found nothing.
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Getter function. return how many solutions were kept.
+     * @return the number of solutions stored
+     */
+    public long getStores() {
+        return stores.sum();
+    }
+
+    /**
+     * Getter function. return how many files were deleted to stay within
+     * the limit.
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "memory hits: " + getMemoryHits() + ", disk hits: " + getDiskHits()
+                + ", misses: " + getMisses() + ", stored: " + getStores()
+                + ", evicted: " + getEvictions();
+    }
+
+    /**
+     * Keep a solution in memory, pushing out the one used the longest time
+     * ago if memory is full.
+     * @param key the hash of the safe
+     * @param lasers the solution, which is not changed after this
+     */
+    private void remember(String key, boolean[] lasers) {
+        synchronized (memory) {
+            memory.put(key, lasers);
+        }
+    }
+
+    /**
+     * Count a file that was written, and delete the files used the longest
+     * time ago if they take more than the limit.  Other processes write to
+     * the same directory, so the files are counted again before any is
+     * deleted.
+     * @param bytes the size of the file written
+     * @throws IOException if the directory can not be read
+     */
+    private synchronized void grow(long bytes) throws IOException {
+        diskBytes += bytes;
+        if (diskBytes <= maxBytes) {
+            return;
+        }
+        List<CachedFile> files = files();
+        files.sort(Comparator.comparing(CachedFile::getTime));
+        diskBytes = files.stream().mapToLong(CachedFile::getSize).sum();
+        for (int i = 0; i < files.size() && diskBytes > maxBytes; i++) {
+            if (Files.deleteIfExists(files.get(i).path)) {
+                evictions.increment();
+            }
+            diskBytes -= files.get(i).getSize();
+        }
+    }
+
+    /**
+     * The solution files in the directory, with their sizes and times.
+     * @return the files
+     * @throws IOException if the directory can not be read
+     */
+    private List<CachedFile> files() throws IOException {
+        List<CachedFile> files = new ArrayList<>();
+        try (Stream<Path> list = Files.list(dir)) {
+            for (Path path : (Iterable<Path>) list::iterator) {
+                if (path.getFileName().toString().endsWith(SUFFIX)) {
+                    try {
+                        files.add(new CachedFile(path, Files.size(path), Files.getLastModifiedTime(path)));
+                    } catch (NoSuchFileException e) {
+                        // deleted by another process meanwhile
+                    }
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * A solution file, as it was when the directory was listed.
+     */
+    private static class CachedFile {
+        private final Path path;
+        private final long size;
+        private final FileTime time;
+
+        /**
+         * constructor. create the entry of a file.
+         * @param path the file
+         * @param size its size in bytes
+         * @param time when it was last written or found
+         */
+        CachedFile(Path path, long size, FileTime time) {
+            this.path = path;
+            this.size = size;
+            this.time = time;
+        }
+
+        /**
+         * Getter function. return the size of the file.
+         * @return the size in bytes
+         */
+        long getSize() {
+            return size;
+        }
+
+        /**
+         * Getter function. return when the file was last written or found.
+         * @return the time
+         */
+        FileTime getTime() {
+            return time;
+        }
+    }
+
+    /**
+     * Holds the shared cache, which is made when the holder is first used.
+     */
+    private static class Shared {
+        private final static SolutionCache CACHE = open();
+
+        /**
+         * Open the shared cache in the directory the system property names.
+         * @return the cache, or null if it is turned off
+         */
+        private static SolutionCache open() {
+            String name = System.getProperty(DIR_PROPERTY);
+            if ("off".equals(name)) {
+                return null;
+            }
+            Path dir = name != null ? Paths.get(name)
+                    : Paths.get(System.getProperty("user.home"), ".lasers", "cache");
+            try {
+                return new SolutionCache(dir, MEMORY_CAPACITY, DISK_BYTES);
+            } catch (IOException e) {
+                try {
+                    return new SolutionCache(null, MEMORY_CAPACITY, DISK_BYTES);
+                } catch (IOException noDirectory) {
+                    // there is no directory to fail
+                    throw new IllegalStateException(noDirectory);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package backtracking;
+
+import java.util.function.LongConsumer;
+
+/**
+ * The limits of a search: how long it may take, how many nodes it may
+ * expand, and a token to cancel it by.  A limit that is not set does not
+ * hold the search back.
+ *
+ * The node limit is checked at every node.  The clock and the token are
+ * only looked at every CHECK_INTERVAL nodes, so a search that is much
+ * cheaper per node than reading the clock does not slow down, and stops
+ * a few thousand nodes at most after its time is up.
+ *
+ * A budget can also be told of the progress of a search: every
+ * CHECK_INTERVAL nodes it is given the number of nodes so far, on the
+ * thread of the search, which is how a window shows a search that is
+ * running.
+ *
+ * A budget holds no state of a search, so the same budget can be given
+ * to many searches, one after the other or at once; the timeout counts
+ * from the start of each of them.
+ */
+public class SolveBudget {
+    /** how many nodes apart the clock and the token are looked at, a power of two */
+    public final static long CHECK_INTERVAL = 1 << 10;
+
+    private long timeoutNanos;
+    private long nodeLimit;
+    private CancellationToken token;
+    private LongConsumer progress;
+
+    /**
+     * constructor. create a budget with no limits.
+     */
+    public SolveBudget() {
+        this.timeoutNanos = Long.MAX_VALUE;
+        this.nodeLimit = Long.MAX_VALUE;
+    }
+
+    /**
+     * Setter function. set how long a search may take.
+     * @param millis the time in milliseconds, from the start of the search
+     */
+    public void setTimeout(long millis) {
+        this.timeoutNanos = millis >= Long.MAX_VALUE / 1_000_000 ? Long.MAX_VALUE : millis * 1_000_000;
+    }
+
+    /**
+     * Setter function. set how many nodes a search may expand.
+     * @param nodeLimit the number of nodes
+     */
+    public void setNodeLimit(long nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Setter function. set the token a search can be cancelled by.
+     * @param token the token, or null for none
+     */
+    public void setToken(CancellationToken token) {
+        this.token = token;
+    }
+
+    /**
+     * Setter function. set what to tell of the progress of a search.  It
+     * is called on the thread of the search, so it must be quick and
+     * thread safe.
+     * @param progress given the nodes expanded so far, or null for nothing
+     */
+    public void setProgress(LongConsumer progress) {
+        this.progress = progress;
+    }
+
+    /**
+     * Getter function. return how many nodes a search may expand.
+     * @return the number of nodes, Long.MAX_VALUE if there is no limit
+     */
+    public long getNodeLimit() {
+        return nodeLimit;
+    }
+
+    /**
+     * Getter function. return the token a search can be cancelled by.
+     * @return the token, or null if there is none
+     */
+    public CancellationToken getToken() {
+        return token;
+    }
+
+    /**
+     * The time a search that starts now has to be done by.
+     * @return the deadline, in System.nanoTime terms
+     */
+    long deadline() {
+        long now = System.nanoTime();
+        return timeoutNanos > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + timeoutNanos;
+    }
+
+    /**
+     * Has a search used up its budget?  This is asked before every node
+     * is expanded.
+     * @param nodes the nodes the search has expanded so far
+     * @param deadline what deadline returned when it started
+     * @return why the search must stop, or null if it can go on
+     */
+    SolveStatus check(long nodes, long deadline) {
+        if (nodes >= nodeLimit) {
+            return SolveStatus.NODE_LIMIT;
+        }
+        if ((nodes & (CHECK_INTERVAL - 1)) == 0) {
+            if (progress != null) {
+                progress.accept(nodes);
+            }
+            if (token != null && token.isCancelled()) {
+                return SolveStatus.CANCELLED;
+            }
+            if (deadline != Long.MAX_VALUE && System.nanoTime() - deadline >= 0) {
+                return SolveStatus.TIMED_OUT;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,41 @@
+package backtracking;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The Flight Recorder event of a search that ends.  It begins when the
+ * search starts, so its duration is the time of the whole search.  The
+ * counts are those of the backtracker since its metrics were last reset.
+ */
+@Name("backtracking.SolveEnd")
+@Label("Solve End")
+@Category("Lasers")
+@Description("A backtracking search ends, with what it found and its counts")
+public class SolveEndEvent extends jdk.jfr.Event {
+    @Label("Solver")
+    String solver;
+
+    @Label("Configuration")
+    String configuration;
+
+    @Label("Solved")
+    boolean solved;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Successors")
+    long successors;
+
+    @Label("Invalid Successors")
+    long invalid;
+
+    @Label("Backtracks")
+    long backtracks;
+
+    @Label("Maximum Depth")
+    int maxDepth;
+}
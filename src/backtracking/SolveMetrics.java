@@ -0,0 +1,306 @@
+package backtracking;
+
+import java.util.Arrays;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * The counts a backtracker keeps of its searches: nodes expanded,
+ * successors looked at, the invalid ones by the reason they were cut
+ * off, the deepest level reached and how often the search backed up.
+ * Keeping them costs an increment here and there, so they are always
+ * on.
+ *
+ * With phase timing on, the time spent on each phase of the search is
+ * added up as well: making successors, checking them, and checking for
+ * goals.  That reads the clock twice per call, which costs more than the
+ * call itself in the in-place engines, so it is off by default.
+ *
+ * The counts also drive the Flight Recorder events of the searches: an
+ * event when a search starts, one when it ends, and one every MILESTONE
+ * nodes in between.  The first event made in a JVM sets up the Flight
+ * Recorder, which takes a good part of a second, so no event is made
+ * unless the Flight Recorder is already running.
+ */
+public class SolveMetrics {
+    /** The phases of a search that are timed */
+    public enum Phase { SUCCESSORS, VALIDITY, GOAL };
+
+    /** how many nodes apart the milestone events are, a power of two */
+    public final static long MILESTONE = 1 << 20;
+
+    private final String solver;
+    private long nodes;
+    private long successors;
+    private final long[] invalid;
+    private int maxDepth;
+    private long backtracks;
+    private final long[] phaseNanos;
+    private long elapsedNanos;
+    private boolean timing;
+
+    // the search that is running, for its events
+    private SolveEndEvent end;
+    private String configuration;
+
+    /**
+     * constructor. create counts that are all zero.
+     * @param solver the name of the solver, for the events
+     */
+    public SolveMetrics(String solver) {
+        this.solver = solver;
+        this.invalid = new long[PruneReason.values().length];
+        this.phaseNanos = new long[Phase.values().length];
+    }
+
+    /**
+     * constructor. copy the counts of other metrics.
+     * @param other the metrics to copy
+     */
+    public SolveMetrics(SolveMetrics other) {
+        this.solver = other.solver;
+        this.nodes = other.nodes;
+        this.successors = other.successors;
+        this.invalid = other.invalid.clone();
+        this.maxDepth = other.maxDepth;
+        this.backtracks = other.backtracks;
+        this.phaseNanos = other.phaseNanos.clone();
+        this.elapsedNanos = other.elapsedNanos;
+        this.timing = other.timing;
+    }
+
+    /**
+     * Set every count back to zero.  Phase timing stays as it is.
+     */
+    public void reset() {
+        nodes = 0;
+        successors = 0;
+        Arrays.fill(invalid, 0);
+        maxDepth = 0;
+        backtracks = 0;
+        Arrays.fill(phaseNanos, 0);
+        elapsedNanos = 0;
+    }
+
+    /**
+     * Setter function. turn the timing of the phases on or off.
+     * @param timing true to time every phase
+     */
+    public void setPhaseTiming(boolean timing) {
+        this.timing = timing;
+    }
+
+    /**
+     * Getter function. return the name of the solver.
+     * @return the name
+     */
+    public String getSolver() {
+        return solver;
+    }
+
+    /**
+     * Getter function. return how many nodes were expanded.
+     * @return the number of nodes
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Getter function. return how many successors were looked at, valid
+     * or not.
+     * @return the number of successors
+     */
+    public long getSuccessors() {
+        return successors;
+    }
+
+    /**
+     * Getter function. return how many successors were cut off for a
+     * reason.
+     * @param reason the reason
+     * @return the number of invalid successors
+     */
+    public long getInvalid(PruneReason reason) {
+        return invalid[reason.ordinal()];
+    }
+
+    /**
+     * Getter function. return how many successors were cut off in all.
+     * @return the number of invalid successors
+     */
+    public long getInvalid() {
+        long total = 0;
+        for (long count : invalid) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Getter function. return the deepest level a search reached, the
+     * starting configuration being level 0.
+     * @return the maximum depth
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Getter function. return how many times a search backed up from a
+     * configuration whose successors were all used up.
+     * @return the number of backtracks
+     */
+    public long getBacktracks() {
+        return backtracks;
+    }
+
+    /**
+     * Getter function. return the time spent on a phase, if phase timing
+     * was on.
+     * @param phase the phase
+     * @return the time in nanoseconds
+     */
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    /**
+     * Getter function. return the time the searches took from start to
+     * end.
+     * @return the time in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * A search starts.
+     * @param config the starting configuration
+     */
+    void begin(Object config) {
+        configuration = config.getClass().getSimpleName();
+        if (FlightRecorder.isInitialized()) {
+            SolveStartEvent start = new SolveStartEvent();
+            if (start.isEnabled()) {
+                start.solver = solver;
+                start.configuration = configuration;
+                start.commit();
+            }
+            end = new SolveEndEvent();
+            end.begin();
+        }
+        elapsedNanos -= System.nanoTime();
+    }
+
+    /**
+     * The search that started last ends.
+     * @param solved true if it found a goal
+     */
+    void end(boolean solved) {
+        elapsedNanos += System.nanoTime();
+        if (end == null) {
+            return;
+        }
+        end.end();
+        if (end.shouldCommit()) {
+            end.solver = solver;
+            end.configuration = configuration;
+            end.solved = solved;
+            end.nodes = nodes;
+            end.successors = successors;
+            end.invalid = getInvalid();
+            end.backtracks = backtracks;
+            end.maxDepth = maxDepth;
+            end.commit();
+        }
+        end = null;
+    }
+
+    /**
+     * A node is expanded.
+     * @param depth its level in the search
+     */
+    void node(int depth) {
+        nodes++;
+        if (depth > maxDepth) {
+            maxDepth = depth;
+        }
+        if ((nodes & (MILESTONE - 1)) == 0 && FlightRecorder.isInitialized()) {
+            SolveMilestoneEvent milestone = new SolveMilestoneEvent();
+            if (milestone.isEnabled()) {
+                milestone.solver = solver;
+                milestone.nodes = nodes;
+                milestone.depth = depth;
+                milestone.maxDepth = maxDepth;
+                milestone.invalid = getInvalid();
+                milestone.backtracks = backtracks;
+                milestone.commit();
+            }
+        }
+    }
+
+    /**
+     * A successor is looked at.
+     */
+    void successor() {
+        successors++;
+    }
+
+    /**
+     * A successor is cut off.
+     * @param reason why, or null if the configuration did not say
+     */
+    void invalid(PruneReason reason) {
+        invalid[(reason == null ? PruneReason.UNKNOWN : reason).ordinal()]++;
+    }
+
+    /**
+     * The search backs up.
+     */
+    void backtrack() {
+        backtracks++;
+    }
+
+    /**
+     * A phase starts.
+     * @return the time it started, or 0 if phases are not timed
+     */
+    long startPhase() {
+        return timing ? System.nanoTime() : 0;
+    }
+
+    /**
+     * A phase ends.
+     * @param phase the phase
+     * @param start what startPhase returned
+     */
+    void endPhase(Phase phase, long start) {
+        if (timing) {
+            phaseNanos[phase.ordinal()] += System.nanoTime() - start;
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append("Nodes expanded: ").append(nodes)
+                .append(", successors: ").append(successors)
+                .append(", backtracks: ").append(backtracks)
+                .append(", maximum depth: ").append(maxDepth);
+        text.append("\nInvalid successors: ").append(getInvalid());
+        for (PruneReason reason : PruneReason.values()) {
+            if (invalid[reason.ordinal()] > 0) {
+                text.append(", ").append(reason.name().toLowerCase().replace('_', ' '))
+                        .append(": ").append(invalid[reason.ordinal()]);
+            }
+        }
+        if (timing) {
+            text.append("\nTime per phase:");
+            for (Phase phase : Phase.values()) {
+                text.append(String.format(" %s %.3f ms", phase.name().toLowerCase(),
+                        phaseNanos[phase.ordinal()] / 1e6));
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,34 @@
+package backtracking;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The Flight Recorder event a search sends every SolveMetrics.MILESTONE
+ * nodes, so a long search shows how it is getting on while it runs.
+ */
+@Name("backtracking.SolveMilestone")
+@Label("Solve Milestone")
+@Category("Lasers")
+@Description("A backtracking search has expanded another batch of nodes")
+public class SolveMilestoneEvent extends jdk.jfr.Event {
+    @Label("Solver")
+    String solver;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Depth")
+    int depth;
+
+    @Label("Maximum Depth")
+    int maxDepth;
+
+    @Label("Invalid Successors")
+    long invalid;
+
+    @Label("Backtracks")
+    long backtracks;
+}
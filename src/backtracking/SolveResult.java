@@ -0,0 +1,61 @@
+package backtracking;
+
+import java.util.Optional;
+
+/**
+ * What a search found, how it ended, and the counts of how it went.  A
+ * search that ran out of its budget has no solution, but its counts are
+ * those of the part it did.
+ *
+ * @param <T> the kind of solution searched for
+ */
+public class SolveResult<T> {
+    private final SolveStatus status;
+    private final Optional<T> solution;
+    private final SolveMetrics metrics;
+
+    /**
+     * constructor. create the result of a search that was done.
+     * @param solution the goal found, or empty if there is none
+     * @param metrics the counts of the search
+     */
+    public SolveResult(Optional<T> solution, SolveMetrics metrics) {
+        this(solution.isPresent() ? SolveStatus.SOLVED : SolveStatus.UNSOLVABLE, solution, metrics);
+    }
+
+    /**
+     * constructor. create the result of a search.
+     * @param status how the search ended
+     * @param solution the goal found, or empty if there is none
+     * @param metrics the counts of the search
+     */
+    public SolveResult(SolveStatus status, Optional<T> solution, SolveMetrics metrics) {
+        this.status = status;
+        this.solution = solution;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Getter function. return how the search ended.
+     * @return the status
+     */
+    public SolveStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Getter function. return the goal the search found.
+     * @return the goal, or empty if there is no solution
+     */
+    public Optional<T> getSolution() {
+        return solution;
+    }
+
+    /**
+     * Getter function. return the counts of the search.
+     * @return the metrics
+     */
+    public SolveMetrics getMetrics() {
+        return metrics;
+    }
+}
@@ -0,0 +1,21 @@
+package backtracking;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The Flight Recorder event of a search that starts.
+ */
+@Name("backtracking.SolveStart")
+@Label("Solve Start")
+@Category("Lasers")
+@Description("A backtracking search starts")
+public class SolveStartEvent extends jdk.jfr.Event {
+    @Label("Solver")
+    String solver;
+
+    @Label("Configuration")
+    String configuration;
+}
@@ -0,0 +1,25 @@
+package backtracking;
+
+/**
+ * How a search with a budget ended.
+ */
+public enum SolveStatus {
+    /** a goal was found */
+    SOLVED,
+    /** the whole search was done and there is no goal */
+    UNSOLVABLE,
+    /** the deadline passed before the search was done */
+    TIMED_OUT,
+    /** the search expanded as many nodes as it was allowed to */
+    NODE_LIMIT,
+    /** the search was cancelled through its token */
+    CANCELLED;
+
+    /**
+     * Did the search stop before it was done, so a goal may still exist?
+     * @return true if the budget ran out or the search was cancelled
+     */
+    public boolean isExhausted() {
+        return this != SOLVED && this != UNSOLVABLE;
+    }
+}
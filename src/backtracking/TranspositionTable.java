@@ -0,0 +1,320 @@
+package backtracking;
+
+import java.util.Arrays;
+
+/**
+ * A bounded set of the states a search has proven to lead to no
+ * solution, keyed by a 64-bit hash of the state.  Once it is full, every
+ * new state pushes an old one out, picked in one of two ways:
+ *
+ * - LRU: the state that was stored or found the longest time ago.
+ * - CLOCK: a hand sweeps over the entries and takes the first one that
+ *   has not been found since the hand last passed it.  It is cheaper
+ *   than LRU on every lookup and keeps the states that keep paying off.
+ *
+ * The entries are kept in plain arrays that are allocated once, and a
+ * table of ints with linear probing finds the entry of a hash, so the
+ * table never allocates while the search runs.  Two different states
+ * with the same hash are taken for the same one; with 64 bits that is
+ * rare enough to be ignored.
+ */
+public class TranspositionTable {
+    /** The ways to pick the entry that is pushed out of a full table */
+    public enum Eviction { LRU, CLOCK };
+
+    /** about how many bytes an entry takes, index included */
+    public final static int BYTES_PER_ENTRY = 32;
+    /** the most entries a table can have */
+    public final static int MAX_CAPACITY = 1 << 29;
+
+    private final Eviction eviction;
+    private final int capacity;
+    private final long[] keys;
+
+    // the entries from the most recently used to the least, for LRU
+    private final int[] prev;
+    private final int[] next;
+    private int head;
+    private int tail;
+
+    // the bits the hand looks at, for CLOCK
+    private final boolean[] referenced;
+    private int hand;
+
+    // entry number + 1 for every hash, 0 where there is none
+    private final int[] index;
+    private final int mask;
+    private int size;
+
+    private long hits;
+    private long misses;
+    private long stores;
+    private long evictions;
+
+    /**
+     * constructor. create an empty table.
+     * @param capacity the most states the table holds
+     * @param eviction how the state to push out is picked
+     */
+    public TranspositionTable(int capacity, Eviction eviction) {
+        if (capacity < 1 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("capacity out of range: " + capacity);
+        }
+        this.eviction = eviction;
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.prev = eviction == Eviction.LRU ? new int[capacity] : null;
+        this.next = eviction == Eviction.LRU ? new int[capacity] : null;
+        this.referenced = eviction == Eviction.CLOCK ? new boolean[capacity] : null;
+        // at least twice as many places as entries keeps the probes short
+        int slots = Integer.highestOneBit(2 * capacity - 1) << 1;
+        this.index = new int[slots];
+        this.mask = slots - 1;
+        this.head = -1;
+        this.tail = -1;
+    }
+
+    /**
+     * Create an empty table that fits in about the given memory.
+     * @param bytes the memory the table may take
+     * @param eviction how the state to push out is picked
+     * @return the table
+     */
+    public static TranspositionTable withMemory(long bytes, Eviction eviction) {
+        long capacity = Math.max(1, Math.min(bytes / BYTES_PER_ENTRY, MAX_CAPACITY));
+        return new TranspositionTable((int) capacity, eviction);
+    }
+
+    /**
+     * Is a state known to lead to no solution?
+     * @param key the hash of the state
+     * @return true if the table holds it
+     */
+    public boolean contains(long key) {
+        int pos = find(key);
+        if (index[pos] == 0) {
+            misses++;
+            return false;
+        }
+        hits++;
+        touch(index[pos] - 1);
+        return true;
+    }
+
+    /**
+     * Remember that a state leads to no solution.
+     * @param key the hash of the state
+     */
+    public void add(long key) {
+        int pos = find(key);
+        if (index[pos] != 0) {
+            touch(index[pos] - 1);
+            return;
+        }
+        stores++;
+        int entry;
+        if (size < capacity) {
+            entry = size++;
+        } else {
+            entry = victim();
+            remove(keys[entry]);
+            evictions++;
+            pos = find(key);
+        }
+        keys[entry] = key;
+        index[pos] = entry + 1;
+        if (eviction == Eviction.LRU) {
+            linkFirst(entry);
+        } else {
+            referenced[entry] = false;
+        }
+    }
+
+    /**
+     * Forget every state.  The counters are kept.
+     */
+    public void clear() {
+        Arrays.fill(index, 0);
+        size = 0;
+        head = -1;
+        tail = -1;
+        hand = 0;
+    }
+
+    /**
+     * Getter function. return how the state to push out is picked.
+     * @return LRU or CLOCK
+     */
+    public Eviction getEviction() {
+        return eviction;
+    }
+
+    /**
+     * Getter function. return the most states the table holds.
+     * @return the capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Getter function. return how many states the table holds.
+     * @return the size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Getter function. return how many lookups found their state.
+     * @return the number of hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Getter function. return how many lookups did not find their state.
+     * @return the number of misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Getter function. return how many states were stored.
+     * @return the number of stores
+     */
+    public long getStores() {
+        return stores;
+    }
+
+    /**
+     * Getter function. return how many states were pushed out.
+     * @return the number of evictions
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public String toString() {
+        return "hits: " + hits + ", misses: " + misses + ", stored: " + stores
+                + ", evicted: " + evictions;
+    }
+
+    /**
+     * Find where a hash is in the index, or the empty place where it
+     * would go.
+     * @param key the hash
+     * @return the position in the index
+     */
+    private int find(long key) {
+        int pos = home(key);
+        while (index[pos] != 0 && keys[index[pos] - 1] != key) {
+            pos = (pos + 1) & mask;
+        }
+        return pos;
+    }
+
+    /**
+     * The place in the index a hash is looked for first.
+     * @param key the hash
+     * @return the position in the index
+     */
+    private int home(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    /**
+     * Take a hash out of the index, moving the ones after it back so no
+     * search for them runs into the hole.
+     * @param key the hash, which is in the index
+     */
+    private void remove(long key) {
+        int hole = find(key);
+        index[hole] = 0;
+        int pos = hole;
+        while (true) {
+            pos = (pos + 1) & mask;
+            if (index[pos] == 0) {
+                return;
+            }
+            int want = home(keys[index[pos] - 1]);
+            // move the entry if the hole lies between where it wants to be
+            // and where it is
+            if (((pos - want) & mask) >= ((pos - hole) & mask)) {
+                index[hole] = index[pos];
+                index[pos] = 0;
+                hole = pos;
+            }
+        }
+    }
+
+    /**
+     * Mark an entry as used.
+     * @param entry the entry number
+     */
+    private void touch(int entry) {
+        if (eviction == Eviction.LRU) {
+            if (entry != head) {
+                unlink(entry);
+                linkFirst(entry);
+            }
+        } else {
+            referenced[entry] = true;
+        }
+    }
+
+    /**
+     * Pick the entry to push out of a full table.
+     * @return the entry number
+     */
+    private int victim() {
+        if (eviction == Eviction.LRU) {
+            int entry = tail;
+            unlink(entry);
+            return entry;
+        }
+        while (referenced[hand]) {
+            referenced[hand] = false;
+            hand = (hand + 1) % capacity;
+        }
+        int entry = hand;
+        hand = (hand + 1) % capacity;
+        return entry;
+    }
+
+    /**
+     * Put an entry at the front of the LRU list.
+     * @param entry the entry number
+     */
+    private void linkFirst(int entry) {
+        prev[entry] = -1;
+        next[entry] = head;
+        if (head != -1) {
+            prev[head] = entry;
+        }
+        head = entry;
+        if (tail == -1) {
+            tail = entry;
+        }
+    }
+
+    /**
+     * Take an entry out of the LRU list.
+     * @param entry the entry number
+     */
+    private void unlink(int entry) {
+        if (prev[entry] != -1) {
+            next[prev[entry]] = next[entry];
+        } else {
+            head = next[entry];
+        }
+        if (next[entry] != -1) {
+            prev[next[entry]] = prev[entry];
+        } else {
+            tail = prev[entry];
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package backtracking;
+
+/**
+ * A configuration that is changed in place instead of copied.  The
+ * backtracker applies one of the branches at the current point of the
+ * search, looks further, and undoes the branch again before it tries
+ * the next one.  A puzzle that implements this interface is searched
+ * without creating any objects along the way.
+ */
+public interface UndoableConfiguration {
+    /**
+     * Get the number of branches at the current point of the search.
+     *
+     * @return the number of branches; 0 if there is nothing left to decide
+     */
+    public int getBranchCount();
+
+    /**
+     * Apply one branch and move one step deeper into the search.
+     *
+     * @param branch the branch, from 0 to getBranchCount() - 1
+     */
+    public void apply(int branch);
+
+    /**
+     * Undo the branch that was applied last.
+     */
+    public void undo();
+
+    /**
+     * Is the current configuration valid or not?
+     *
+     * @return true if valid; false otherwise
+     */
+    public boolean isValid();
+
+    /**
+     * Is the current configuration a goal?
+     * @return true if goal; false otherwise
+     */
+    public boolean isGoal();
+
+    /**
+     * Get the grid that shows this configuration.
+     * @return the grid of the configuration
+     */
+    public String[][] getGrid();
+
+    /**
+     * Get the reason the last call to isValid returned false.
+     * @return the reason, or UNKNOWN if the configuration does not say
+     */
+    public default PruneReason getPruneReason() {
+        return PruneReason.UNKNOWN;
+    }
+
+    /**
+     * Get a hash of what is left to decide.  Of two configurations with
+     * the same hash, either both or neither have a solution below them,
+     * however they got there, so a search can skip a configuration whose
+     * hash it has seen lead nowhere before.
+     * @return the hash, or 0 if the configuration does not keep one
+     */
+    public default long getStateHash() {
+        return 0;
+    }
+}
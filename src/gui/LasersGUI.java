@@ -1,13 +1,22 @@
 package gui;
 
-import backtracking.Backtracker;
-import backtracking.Configuration;
-import backtracking.SafeConfig;
+import backtracking.CancellationToken;
+import backtracking.IterativeBacktracker;
+import backtracking.SafeBoard;
+import backtracking.SafePuzzle;
+import backtracking.SolutionCache;
+import backtracking.SolveBudget;
+import backtracking.SolveMetrics;
+import backtracking.SolveResult;
+import backtracking.SolveStatus;
+import backtracking.UndoableConfiguration;
 import javafx.application.Application;
+import javafx.concurrent.Task;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
@@ -16,6 +25,8 @@ import javafx.stage.Stage;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import model.*;
 
@@ -24,6 +35,15 @@ import model.*;
  * the view/controller portion of the UI.  It is connected to the model
  * and receives updates from it.
  *
+ * As soon as a safe is loaded, its solution is looked up in the shared
+ * SolutionCache.  If it is not there, it is searched for on a thread of
+ * its own, so the window keeps responding.  Either way it is kept in the
+ * model.  Run with -Dlasers.cache=off to always search.
+ * Hint and Solve then only compare the grid with it.  The number of
+ * nodes searched so far is shown next to the buttons while the search
+ * runs, and Cancel stops it.  The result is handed to the model on the
+ * JavaFX thread once the search is over.
+ *
  * @author Sean Strout @ RIT CS
  * @author Yuying Mao
  * @author Connor Milligan
@@ -35,11 +55,20 @@ public class LasersGUI extends Application implements Observer {
     private Label top;
     private HashMap<String,Button> inputs;
     private BorderPane pane;
-    private SafeConfig safeConfig;
+    private String filename;
     private boolean reload;
     private boolean verify;
     private Stage stage;
-    private Backtracker bt;
+    private IterativeBacktracker bt;
+
+    // the search for the solution, and the controls that follow it
+    private ExecutorService solver;
+    private CancellationToken token;
+    private Button hint;
+    private Button solve;
+    private Button cancel;
+    private ProgressIndicator progress;
+    private Label nodes;
 
     @Override
     public void init() throws Exception {
@@ -49,13 +78,18 @@ public class LasersGUI extends Application implements Observer {
             Parameters params = getParameters();
             String filename = params.getRaw().get(0);
             this.model = new LasersModel(filename);
-            this.safeConfig=new SafeConfig(filename);
+            this.filename=filename;
             this.inputs=new HashMap<>();
             this.top=new Label();
             this.pane=new BorderPane();
             this.reload=false;
             this.verify=false;
-            this.bt = new Backtracker(false);
+            this.bt = new IterativeBacktracker(false);
+            this.solver = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "solver");
+                thread.setDaemon(true);
+                return thread;
+            });
         } catch (FileNotFoundException fnfe) {
             System.out.println(fnfe.getMessage());
             System.exit(-1);
@@ -106,6 +140,16 @@ public class LasersGUI extends Application implements Observer {
         this.stage=primaryStage;
         stage.setResizable(false);
         stage.show();
+
+        presolve(null);
+    }
+
+    @Override
+    public void stop() {
+        if (this.token != null) {
+            this.token.cancel();
+        }
+        this.solver.shutdown();
     }
 
     /**
@@ -206,20 +250,25 @@ public class LasersGUI extends Application implements Observer {
     }
 
     /**
-     * create a VBox that contains buttons which are check, hint, solve, reset and load,
-     * and return it.
+     * create a VBox that contains buttons which are check, hint, solve, reset, load and
+     * cancel, with the progress of a search under them, and return it.
      * @return the VBox that contains buttons and also is the right of the BorderPane.
      */
     public VBox makeRight(){
         VBox buttons=new VBox(5);
         Button check=new Button("Check");
-        Button hint=new Button("Hint");
-        Button solve=new Button("Solve");
+        this.hint=new Button("Hint");
+        this.solve=new Button("Solve");
         Button restart=new Button("Restart");
         Button load=new Button("Load");
+        this.cancel=new Button("Cancel");
+        this.cancel.setDisable(true);
+        this.progress=new ProgressIndicator();
+        this.progress.setVisible(false);
+        this.nodes=new Label();
         buttons.setSpacing(10);
         buttons.setPadding(new Insets(20, 10, 10, 10));
-        buttons.getChildren().addAll(restart,load,hint,solve,check);
+        buttons.getChildren().addAll(restart,load,hint,solve,check,cancel,progress,nodes);
 
         //when click check button
         check.setOnAction(event -> {
@@ -230,34 +279,18 @@ public class LasersGUI extends Application implements Observer {
         //when click restart button
         restart.setOnAction(event -> this.model.reset());
 
-        //when click hint button
-        hint.setOnAction(event -> {
-            safeConfig.setGrid(this.model.getGrid());
-            List<Configuration> sol = this.bt.solveWithPath(safeConfig);
-            if(this.model.verify()){
-                this.model.setMessage(this.model.getMessage());
-            }
-            else{
-                if(sol.size() != 0){
-                    SafeConfig s=(SafeConfig)sol.get(1);
-                    this.model.setGrid(s.getGrid());
-                    this.model.setMessage("Hint: Lasers add at ("+s.getCurrRow()+", "+s.getCurrCol()+")");
-                } else{
-                    this.model.setMessage("Has No Solution!");
-                }
-            }
-        });
+        //when click hint button. the grid is compared with the solution, which is
+        // searched for first if it is not known yet.
+        hint.setOnAction(event -> whenSolved(this.model::hint));
 
         //when click solve button
-        solve.setOnAction(event -> {
-            Optional<Configuration> sol = bt.solve(safeConfig);
-            if(sol.isPresent()){
-                SafeConfig s=(SafeConfig)sol.get();
-                this.model.setGrid(s.getGrid());
-                this.model.setMessage("Solved!");
-            }
-            else{
-                this.model.setMessage("Has No Solution!");
+        solve.setOnAction(event -> whenSolved(this.model::solve));
+
+        //when click cancel button. the search stops at its next check, and its
+        // result says it was cancelled.
+        cancel.setOnAction(event -> {
+            if(this.token!=null){
+                this.token.cancel();
             }
         });
 
@@ -271,8 +304,12 @@ public class LasersGUI extends Application implements Observer {
                 try{
                     reload=true;
                     SafeModel safe=new SafeModel(file);
-                    safeConfig=new SafeConfig(file);
+                    if(this.token!=null){
+                        this.token.cancel();
+                    }
+                    this.filename=file;
                     this.model.setSafe(safe);
+                    presolve(null);
                 }catch(FileNotFoundException e){
                     e.getMessage();
                 }
@@ -282,6 +319,102 @@ public class LasersGUI extends Application implements Observer {
         return buttons;
     }
 
+    /**
+     * helper function for solve and hint buttons. do something with the solution of the
+     * safe, right away if it is known, or else once it is found.
+     * @param action what to do with the solution
+     */
+    private void whenSolved(Runnable action){
+        if(this.model.isSolutionKnown()){
+            action.run();
+        }
+        else if(this.token==null){
+            presolve(action);
+        }
+    }
+
+    /**
+     * search for the solution of the current safe as a Task on the solver thread, and
+     * keep it in the model. hint and solve wait for it, but the grid can be played
+     * meanwhile. the nodes searched so far are shown as it goes, and Cancel stops it. a
+     * safe that is loaded before it is over cancels it, and its result is dropped.
+     * @param then what to do once the solution is known, or null for nothing
+     */
+    private void presolve(Runnable then){
+        String file=this.filename;
+        CancellationToken token=new CancellationToken();
+        SolveBudget budget=new SolveBudget();
+        budget.setToken(token);
+        Task<SolveResult<String[][]>> task=new Task<SolveResult<String[][]>>() {
+            @Override
+            protected SolveResult<String[][]> call() throws FileNotFoundException {
+                budget.setProgress(count -> updateMessage("Nodes: "+count));
+                SafeBoard board=new SafeBoard(file);
+                SafePuzzle puzzle=board.getPuzzle();
+                SolutionCache cache=SolutionCache.getDefault();
+                Optional<boolean[]> cached=cache==null ? Optional.empty() : cache.get(puzzle);
+                if(cached.isPresent()){
+                    return new SolveResult<>(cached.map(puzzle::toGrid), new SolveMetrics("SolutionCache"));
+                }
+                board.setPropagation(true);
+                board.setCellOrder(SafeBoard.CellOrder.MOST_CONSTRAINED);
+                if(board.presolve()==null){
+                    return new SolveResult<>(Optional.empty(), new SolveMetrics("SafeBoard"));
+                }
+                SolveResult<UndoableConfiguration> result=bt.solveInPlace(board, budget);
+                if(cache!=null && result.getSolution().isPresent()){
+                    cache.put(puzzle, board.getLasers());
+                }
+                return new SolveResult<>(result.getStatus(),
+                        result.getSolution().map(goal -> puzzle.toGrid(board.getLasers())),
+                        result.getMetrics());
+            }
+        };
+        task.setOnSucceeded(event -> {
+            if(this.token!=token){
+                return;
+            }
+            searching(false);
+            SolveResult<String[][]> result=task.getValue();
+            this.nodes.setText("Nodes: "+result.getMetrics().getNodes());
+            if(result.getStatus()==SolveStatus.CANCELLED){
+                this.model.setMessage("Cancelled.");
+                return;
+            }
+            this.model.setSolution(result.getSolution().orElse(null));
+            if(then!=null){
+                then.run();
+            }
+        });
+        task.setOnFailed(event -> {
+            if(this.token!=token){
+                return;
+            }
+            searching(false);
+            this.model.setMessage("Search failed: "+task.getException().getMessage());
+        });
+        this.token=token;
+        this.nodes.textProperty().bind(task.messageProperty());
+        searching(true);
+        this.solver.execute(task);
+    }
+
+    /**
+     * helper function for presolve. switch the controls between a search running and
+     * not.
+     * @param running true when a search starts, false when it is over
+     */
+    private void searching(boolean running){
+        if(!running){
+            this.nodes.textProperty().unbind();
+            this.token=null;
+        }
+        this.hint.setDisable(running);
+        this.solve.setDisable(running);
+        this.cancel.setDisable(!running);
+        this.progress.setVisible(running);
+    }
+
     /**
      * helper function for load button. when load a new file, reset the GridPane, the center
      * of the BorderPane, and return it.
@@ -378,7 +511,6 @@ public class LasersGUI extends Application implements Observer {
         newGrid.setPadding(new Insets(10,10,10,10));
         newGrid.setVgap(5);
         newGrid.setHgap(5);
-        this.bt=new Backtracker(false);
         return newGrid;
     }
 
@@ -4,12 +4,19 @@ import java.util.Observable;
 
 /**
  * The model for LasersPTUI and LasersGUI.
+ *
+ * The model can keep a solution of its safe, found by the view in the
+ * background as soon as the safe is loaded.  Hint and solve then only
+ * compare the grid with that solution, once over the slots, and do not
+ * search at all.
  * @author Yuying Mao
  * @author  Connor Milligan
  */
 public class LasersModel extends Observable {
 
     private SafeModel safe;
+    private String[][] solution;
+    private boolean solutionKnown;
 
     /**
      * The constructor of LasersModel. Create a new SafeModel.
@@ -146,6 +153,87 @@ public class LasersModel extends Observable {
         announceChange();
     }
 
+    /**
+     * Setter function. keeps the solution of the safe for hint and solve. it does not
+     * notify observers, since the grid does not change.
+     * @param solution the solved grid, or null if the safe has no solution
+     */
+    public void setSolution(String[][] solution){
+        this.solution=solution;
+        this.solutionKnown=true;
+    }
+
+    /**
+     * Getter function. returns whether the solution of the safe is known, whether or
+     * not there is one.
+     * @return true once setSolution was called for the current safe
+     */
+    public boolean isSolutionKnown(){
+        return this.solutionKnown;
+    }
+
+    /**
+     * Compares the grid with the solution and takes one step towards it: the first
+     * laser that is not in the solution is removed, or else the first laser of the
+     * solution that is missing is added. A grid that verifies is left as it is, since
+     * a safe may have other solutions than the one known. notifies observers.
+     */
+    public void hint(){
+        if(verify()){
+            return;
+        }
+        if(this.solution==null){
+            this.safe.setMessage(this.solutionKnown ? "Has No Solution!" : "No solution known yet");
+            announceChange();
+            return;
+        }
+        String[][] grid=this.safe.getGrid();
+        int addRow=-1;
+        int addCol=-1;
+        for(int row=0;row<grid.length;row++){
+            for(int col=0;col<grid[row].length;col++){
+                boolean laser=grid[row][col].equals(SafeModel.LASER);
+                if(laser && !this.solution[row][col].equals(SafeModel.LASER)){
+                    this.safe.remove(row,col);
+                    this.safe.setMessage("Hint: Lasers remove at ("+row+", "+col+")");
+                    announceChange();
+                    return;
+                }
+                if(!laser && addRow<0 && this.solution[row][col].equals(SafeModel.LASER)){
+                    addRow=row;
+                    addCol=col;
+                }
+            }
+        }
+        if(addRow>=0){
+            this.safe.add(addRow,addCol);
+            this.safe.setMessage("Hint: Lasers add at ("+addRow+", "+addCol+")");
+        }
+        else{
+            this.safe.verify();
+            this.safe.resetErrorSlot();
+        }
+        announceChange();
+    }
+
+    /**
+     * Puts the solution in place of the grid and notifies observers.
+     */
+    public void solve(){
+        if(this.solution==null){
+            this.safe.setMessage(this.solutionKnown ? "Has No Solution!" : "No solution known yet");
+            announceChange();
+            return;
+        }
+        String[][] grid=new String[this.solution.length][];
+        for(int row=0;row<grid.length;row++){
+            grid[row]=this.solution[row].clone();
+        }
+        this.safe.setGrid(grid);
+        this.safe.setMessage("Solved!");
+        announceChange();
+    }
+
     /**
      * Getter function. returns the SafeModel.
      * @return the SafeModel.
@@ -163,10 +251,13 @@ public class LasersModel extends Observable {
 
     /**
      * Setter function. sets the SafeModel to a given SafeModel and notifies observers.
+     * The solution of the old safe is dropped.
      * @param safe the given SafeModel
      */
     public void setSafe(SafeModel safe) {
         this.safe = safe;
+        this.solution = null;
+        this.solutionKnown = false;
         announceChange();
     }
 }
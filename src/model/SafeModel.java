@@ -25,6 +25,7 @@ public class SafeModel extends Observable {
     private String initM;
     private String message;
     private Integer[] errorSlot;
+    private int[][] coverage;
 
     /**
      * Constructor. Read the file and initialize the grid.
@@ -52,113 +53,108 @@ public class SafeModel extends Observable {
                 this.grid[row][col]=this.initGrid[row][col];
             }
         }
+        recount();
         this.initM=filename+" is loaded";
         this.message=this.initM;
     }
 
     /**
-     * Add laser helper function
+     * Walk the row and column segments of a laser, the cells it shines on,
+     * and change how many lasers cover each of them.  A cell that becomes
+     * covered turns into a beam and a cell that is no longer covered turns
+     * back into an empty slot.  Only the two segments are touched.
      * @param r integer representing the lasers row position
      * @param c integer representing the lasers column position
+     * @param delta 1 when the laser is added, -1 when it is removed
      */
-    public void shootLaser(int r, int c){
+    private void cover(int r, int c, int delta){
+        coverSlot(r, c, delta);
+
         // North
-        for(int row = r; row >= 0; row--){
-            if(this.grid[row][c].equals(EMPTY)){
-                this.grid[row][c] = BEAM;
-            } else if(!this.grid[row][c].equals(LASER)
-                    && !this.grid[row][c].equals(BEAM)){
-                break;
-            }
+        for(int row = r - 1; row >= 0 && !isPillar(row, c); row--){
+            coverSlot(row, c, delta);
         }
 
         // South
-        for(int row = r; row < this.size[0]; row++){
-            if(this.grid[row][c].equals(EMPTY)){
-                this.grid[row][c] = BEAM;
-            } else if(!this.grid[row][c].equals(LASER)
-                    && !this.grid[row][c].equals(BEAM)){
-                break;
-            }
+        for(int row = r + 1; row < this.size[0] && !isPillar(row, c); row++){
+            coverSlot(row, c, delta);
         }
 
         // East
-        for(int col = c; col < this.size[1]; col++){
-            if(this.grid[r][col].equals(EMPTY)){
-                this.grid[r][col] = BEAM;
-            } else if(!this.grid[r][col].equals(LASER) && !this.grid[r][col].equals(BEAM)){
-                break;
-            }
+        for(int col = c + 1; col < this.size[1] && !isPillar(r, col); col++){
+            coverSlot(r, col, delta);
         }
 
         // West
-        for(int col = c; col >= 0; col--){
-            if(this.grid[r][col].equals(EMPTY)){
-                this.grid[r][col] = BEAM;
-            } else if(!this.grid[r][col].equals(LASER) && !this.grid[r][col].equals(BEAM)){
-                break;
-            }
+        for(int col = c - 1; col >= 0 && !isPillar(r, col); col--){
+            coverSlot(r, col, delta);
         }
     }
 
     /**
-     * Remove laser helper function
-     * @param r integer representing the lasers row position
-     * @param c integer representing the lasers column position
+     * Change the number of lasers covering one slot and update the slot.
+     * @param r the row number of the slot
+     * @param c the column number of the slot
+     * @param delta the change in the number of lasers
      */
-    public void removeLaser(int r, int c) {
-        // North
-        for (int row = r; row >= 0; row--) {
-            if (this.grid[row][c].equals(BEAM)) {
-                this.grid[row][c] = EMPTY;
-            } else if (!this.grid[row][c].equals(LASER)) {
-                break;
-            }
+    private void coverSlot(int r, int c, int delta){
+        this.coverage[r][c] += delta;
+        if(!this.grid[r][c].equals(LASER)){
+            this.grid[r][c] = this.coverage[r][c] > 0 ? BEAM : EMPTY;
         }
+    }
 
-        // South
-        for (int row = r; row < this.size[0]; row++) {
-            if (this.grid[row][c].equals(BEAM)) {
-                this.grid[row][c] = EMPTY;
-            } else if (!this.grid[row][c].equals(LASER)) {
-                break;
-            }
-        }
+    /**
+     * Is the slot a pillar?
+     * @param r the row number of the slot
+     * @param c the column number of the slot
+     * @return true if the slot is a pillar, numbered or not
+     */
+    private boolean isPillar(int r, int c){
+        return !this.grid[r][c].equals(EMPTY) && !this.grid[r][c].equals(LASER)
+                && !this.grid[r][c].equals(BEAM);
+    }
 
-        // East
-        for (int col = c; col < this.size[1]; col++) {
-            if (this.grid[r][col].equals(BEAM)) {
-                this.grid[r][col] = EMPTY;
-            } else if (!this.grid[r][col].equals(LASER)) {
-                break;
+    /**
+     * Count from scratch how many lasers cover every slot of the grid.
+     * Only needed when a whole grid is put in place.
+     */
+    private void recount(){
+        this.coverage = new int[this.size[0]][this.size[1]];
+        for(int row = 0; row < this.size[0]; row++){
+            for(int col = 0; col < this.size[1]; col++){
+                if(this.grid[row][col].equals(BEAM)){
+                    this.grid[row][col] = EMPTY;
+                }
             }
         }
-
-        // West
-        for (int col = c; col >= 0; col--) {
-            if (this.grid[r][col].equals(BEAM)) {
-                this.grid[r][col] = EMPTY;
-            } else if (!this.grid[r][col].equals(LASER)) {
-                break;
+        for(int row = 0; row < this.size[0]; row++){
+            for(int col = 0; col < this.size[1]; col++){
+                if(this.grid[row][col].equals(LASER)){
+                    cover(row, col, 1);
+                }
             }
         }
+    }
+
+    /**
+     * Add laser helper function
+     * @param r integer representing the lasers row position
+     * @param c integer representing the lasers column position
+     */
+    public void shootLaser(int r, int c){
+        cover(r, c, 1);
+    }
 
-        // re-deploy any lasers that crossed the removed laser
+    /**
+     * Remove laser helper function.  The slot becomes a beam again if
+     * another laser still shines on it.
+     * @param r integer representing the lasers row position
+     * @param c integer representing the lasers column position
+     */
+    public void removeLaser(int r, int c) {
         this.grid[r][c] = EMPTY;
-        int col = 0;
-        int row = 0;
-        int arraySize = this.size[0] * this.size[1];
-        while(arraySize > 0){
-            if(this.grid[row][col].equals(LASER)){
-                shootLaser(row, col);
-            }
-            col++;
-            if(col > this.size[1] - 1){
-                col = 0;
-                row ++;
-            }
-            arraySize--;
-        }
+        cover(r, c, -1);
     }
 
     /**
@@ -403,6 +399,7 @@ public class SafeModel extends Observable {
                 this.grid[row][col]=this.initGrid[row][col];
             }
         }
+        recount();
         resetErrorSlot();
         this.message=this.initM;
     }
@@ -415,8 +412,14 @@ public class SafeModel extends Observable {
         return grid;
     }
 
+    /**
+     * the current grid Setter function.  The laser coverage is counted
+     * again for the new grid.
+     * @param grid the given grid.
+     */
     public void setGrid(String[][] grid) {
         this.grid = grid;
+        recount();
     }
 
     /**